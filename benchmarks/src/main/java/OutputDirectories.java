@@ -0,0 +1,20 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Benchmarks write the simulation logs to a temporary directory of their own and remove it afterwards
+public class OutputDirectories {
+    private OutputDirectories() {
+    }
+
+    // Deepest paths first, so every directory is empty by the time it is deleted
+    public static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
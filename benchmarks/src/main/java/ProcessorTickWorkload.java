@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class ProcessorTickWorkload implements benchmarks.ProcessorWorkload {
+    private static final long SEED = 1303;
+    // Enough budget that no process is held back by it, so every process ends up waiting for the drive
+    private static final int MAX_RPS_PER_PROCESS = 100;
+
+    private int savedProcessQuantity;
+    private Path outputDirectory;
+    private Logger logger;
+    private DriveArray driveArray;
+    private Processor processor;
+
+    @Override
+    public void setUp(int processQuantity, int cores) {
+        savedProcessQuantity = Main.PROCESS_QUANTITY;
+        Main.PROCESS_QUANTITY = processQuantity;
+
+        try {
+            outputDirectory = Files.createTempDirectory("processor-benchmark");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger = new Logger(outputDirectory.toString(), "processor", Logger.Mode.DIRECT, Logger.Format.BINARY, "");
+
+        List<Process> processes = new ArrayList<>(processQuantity);
+        Metrics metrics = new Metrics(processes);
+        driveArray = new DriveArray(DriveArray.Level.RAID_0, List.of(new FifoQueue(processQuantity)), Main.STRIPE_SECTORS, 1,
+                (query, completionTime) -> query.getProcess().deliverRequestResult(query), metrics);
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        processor = new Processor(processes, cores, Processor.DEFAULT_TIME_QUANTUM_MS, MAX_RPS_PER_PROCESS * processQuantity,
+                random.split(), logger, metrics);
+
+        int sectors = Main.TRACK_QUANTITY * Main.SECTORS_PER_TRACK;
+        for (int i = 0; i < processQuantity; i++) {
+            File file = new File(File.Type.SMALL, 1, new int[]{random.nextInt(sectors)});
+            processor.addProcess(new Process(processor, file, true, driveArray, random.split()));
+        }
+
+        // Every process has to run once to submit its first read before the steady state is reached
+        long warmupTicks = (long) processQuantity * 2 * Process.REQUEST_CREATION_TIME_MS / cores + 1_000L;
+        for (long i = 0; i < warmupTicks; i++) {
+            tick();
+        }
+        // ProcessorBenchmark starts every invocation at the first tick of a second
+        while (processor.getTime() % 1_000L != 0L) {
+            tick();
+        }
+    }
+
+    @Override
+    public long tick() {
+        processor.tick();
+        driveArray.tick();
+        return processor.getTime();
+    }
+
+    @Override
+    public void tearDown() {
+        driveArray.close();
+        logger.close();
+        Main.PROCESS_QUANTITY = savedProcessQuantity;
+
+        try {
+            OutputDirectories.delete(outputDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Served in arrival order at random sectors, so the drive completes requests at the same rate whatever
+    // the number of processes, and every queue operation is O(1); FCFS itself removes from the head of a list
+    private static class FifoQueue implements QuerySelectionAlgorithm {
+        private final int maxQueueSize;
+        private final ArrayDeque<Query> queue = new ArrayDeque<>();
+
+        private FifoQueue(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        @Override
+        public void tryAddRequestToQueue(Query query) throws QueueFullException {
+            if (isFull()) {
+                throw new QueueFullException();
+            }
+            queue.addLast(query);
+        }
+
+        @Override
+        public boolean isFull() {
+            return queue.size() == maxQueueSize;
+        }
+
+        @Override
+        public Query chooseRequest(int currentDrivePosition) {
+            return queue.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class QuerySelectionAlgorithmWorkload implements benchmarks.SchedulerWorkload {
+    private static final long SEED = 1303;
+    private static final int PROCESS_QUANTITY = 10;
+    private static final int CLUSTER_QUANTITY = 8;
+    private static final double CLUSTER_SPREAD_TRACKS = 5.0;
+
+    private String policyName;
+    private int queueSize;
+    private int headPosition;
+    private HardDrive hardDrive;
+    private Query[] queries;
+    private int nextQuery = 0;
+    private QuerySelectionAlgorithm steadyStatePolicy;
+
+    @Override
+    public void setUp(String policy, int queueSize, String distribution, int headPosition) {
+        this.policyName = policy;
+        this.queueSize = queueSize;
+        this.headPosition = headPosition;
+
+        // SPTF asks the drive about its rotational position, the other policies only about the head's track
+        hardDrive = new HardDrive(new SectorBitmap((long) Main.TRACK_QUANTITY * Main.SECTORS_PER_TRACK), true, new Metrics(List.of()));
+        hardDrive.moveDriveTo(headPosition);
+        while (!hardDrive.isReadyAt(headPosition)) {
+            hardDrive.tick();
+        }
+
+        SplittableRandom random = new SplittableRandom(SEED);
+        Process[] processes = new Process[PROCESS_QUANTITY];
+        for (int i = 0; i < processes.length; i++) {
+            processes[i] = new Process(null, new File(File.Type.SMALL, 1, new int[]{0}), false, null, random.split());
+        }
+
+        int[] clusterCenters = random.ints(CLUSTER_QUANTITY, 0, Main.TRACK_QUANTITY).toArray();
+        queries = new Query[Math.max(2 * queueSize, 4096)];
+        for (int i = 0; i < queries.length; i++) {
+            int track = switch (distribution) {
+                case "UNIFORM" -> random.nextInt(Main.TRACK_QUANTITY);
+                case "CLUSTERED" -> {
+                    double offset = random.nextGaussian() * CLUSTER_SPREAD_TRACKS;
+                    int clusteredTrack = clusterCenters[random.nextInt(CLUSTER_QUANTITY)] + (int) Math.round(offset);
+                    yield Math.max(0, Math.min(Main.TRACK_QUANTITY - 1, clusteredTrack));
+                }
+                default -> throw new IllegalArgumentException("Unknown distribution " + distribution);
+            };
+            int sector = track * Main.SECTORS_PER_TRACK + random.nextInt(Main.SECTORS_PER_TRACK);
+            Query.Type type = random.nextBoolean() ? Query.Type.READ : Query.Type.WRITE;
+            queries[i] = new Query(type, sector, processes[random.nextInt(PROCESS_QUANTITY)]);
+        }
+
+        steadyStatePolicy = createPolicy();
+        for (int i = 0; i < queueSize; i++) {
+            addNextQuery(steadyStatePolicy);
+        }
+    }
+
+    // F_LOOK variants only accept half of their capacity into the queue that is being filled
+    private QuerySelectionAlgorithm createPolicy() {
+        return switch (policyName) {
+            case "FCFS" -> new FCFS(queueSize);
+            case "SSTF" -> new SSTF(queueSize);
+            case "F_LOOK" -> new F_LOOK(2 * queueSize);
+            case "TrackIndexedSSTF" -> new TrackIndexedSSTF(queueSize);
+            case "SortedF_LOOK" -> new SortedF_LOOK(2 * queueSize);
+            case "SPTF" -> new SPTF(queueSize);
+            case "Deadline" -> new Deadline(queueSize);
+            case "Adaptive" -> new Adaptive(queueSize);
+            default -> throw new IllegalArgumentException("Unknown policy " + policyName);
+        };
+    }
+
+    private void addNextQuery(QuerySelectionAlgorithm policy) {
+        queries[nextQuery].setArrivalTime(hardDrive.getTime());
+        try {
+            policy.tryAddRequestToQueue(queries[nextQuery]);
+        } catch (QuerySelectionAlgorithm.QueueFullException e) {
+            throw new IllegalStateException("Queue should not be full", e);
+        }
+        nextQuery = (nextQuery + 1) % queries.length;
+    }
+
+    @Override
+    public int fillQueue() {
+        QuerySelectionAlgorithm policy = createPolicy();
+        for (int i = 0; i < queueSize; i++) {
+            addNextQuery(policy);
+        }
+        return queueSize;
+    }
+
+    @Override
+    public Object chooseRequestAndRefill() {
+        Query query = steadyStatePolicy.chooseRequest(hardDrive);
+        addNextQuery(steadyStatePolicy);
+        // The platter turns on between decisions
+        hardDrive.skip(1);
+        return query;
+    }
+}
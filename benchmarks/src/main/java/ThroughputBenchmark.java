@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Usage: ThroughputBenchmark [--baseline benchmarks/baselines/throughput.tsv] [--write-baseline]
+//        [--tolerance 0.05] [--policies 1,2,3] [--max-rps 100,1000] [--seeds 1303] [--warmup 1] [--iterations 3]
+// Without --write-baseline the results are compared against the baseline and the exit code is 1 when the bytes allocated
+// by a run grow beyond the tolerance. Wall-clock throughput and peak heap are reported but do not fail the comparison:
+// they move by tens of percent between runs on the same machine, with the timing of the JIT and the GC.
+public class ThroughputBenchmark {
+    private static final String HEADER = "policy\tqueueSize\tmaxRPS\tseed\tcompletedRequests\tsimulationTimeMs\twallTimeMs" +
+            "\tsimMsPerWallSecond\trequestsPerWallSecond\tpeakHeapBytes\tallocatedBytes";
+
+    private static final String DEFAULT_BASELINE = "benchmarks/baselines/throughput.tsv";
+    // Allocation repeats within a fraction of a percent between runs
+    private static final double DEFAULT_TOLERANCE = 0.05;
+    private static final double REPORT_THRESHOLD = 0.2;
+    private static final int[] DEFAULT_POLICIES = {1, 2, 3};
+    private static final int[] DEFAULT_MAX_RPS = {100, 1000};
+    private static final long[] DEFAULT_SEEDS = {Main.SEED};
+
+    public static void main(String[] args) throws IOException {
+        Path baseline = Path.of(DEFAULT_BASELINE);
+        boolean writeBaseline = false;
+        double tolerance = DEFAULT_TOLERANCE;
+        int[] policies = DEFAULT_POLICIES;
+        int[] maxRPSValues = DEFAULT_MAX_RPS;
+        long[] seeds = DEFAULT_SEEDS;
+        int warmup = 1;
+        int iterations = 3;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--write-baseline")) {
+                writeBaseline = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--baseline" -> baseline = Path.of(value);
+                case "--tolerance" -> tolerance = Double.parseDouble(value);
+                case "--policies" -> policies = parseList(value);
+                case "--max-rps" -> maxRPSValues = parseList(value);
+                case "--seeds" -> seeds = Arrays.stream(value.split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+                case "--warmup" -> warmup = Integer.parseInt(value);
+                case "--iterations" -> iterations = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+            }
+        }
+        if (iterations <= 0) {
+            throw new IllegalArgumentException("iterations should be greater than 0");
+        }
+
+        List<Row> rows = new ArrayList<>();
+        System.out.println(HEADER);
+        for (int policy : policies) {
+            for (int maxRPS : maxRPSValues) {
+                for (long seed : seeds) {
+                    Row row = measure(policy, maxRPS, seed, warmup, iterations);
+                    rows.add(row);
+                    System.out.println(row.format());
+                }
+            }
+        }
+
+        if (writeBaseline) {
+            writeBaseline(baseline, rows);
+            System.out.println("Baseline written to " + baseline);
+            return;
+        }
+
+        if (!Files.exists(baseline)) {
+            System.out.println("No baseline at " + baseline + ", run with --write-baseline to create it");
+            return;
+        }
+        if (!compare(readBaseline(baseline), rows, tolerance)) {
+            System.exit(1);
+        }
+    }
+
+    private static int[] parseList(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    // Throughput is the median over the measured iterations and peak heap the largest value seen. Allocation is the smallest:
+    // code that the JIT has not compiled yet may allocate objects that compiled code does not, so the largest varies between runs
+    private static Row measure(int policyChoice, int maxRPS, long seed, int warmup, int iterations) throws IOException {
+        for (int i = 0; i < warmup; i++) {
+            runOnce(policyChoice, maxRPS, seed);
+        }
+
+        Row[] measured = new Row[iterations];
+        for (int i = 0; i < iterations; i++) {
+            measured[i] = runOnce(policyChoice, maxRPS, seed);
+        }
+
+        Arrays.sort(measured, Comparator.comparingLong(Row::wallTimeMs));
+        Row median = measured[iterations / 2];
+        long peakHeapBytes = Arrays.stream(measured).mapToLong(Row::peakHeapBytes).max().orElseThrow();
+        long allocatedBytes = Arrays.stream(measured).mapToLong(Row::allocatedBytes).min().orElseThrow();
+        return new Row(median.policy, median.queueSize, median.maxRPS, median.seed, median.completedRequests, median.simulationTimeMs,
+                median.wallTimeMs, median.simMsPerWallSecond, median.requestsPerWallSecond, peakHeapBytes, allocatedBytes);
+    }
+
+    private static Row runOnce(int policyChoice, int maxRPS, long seed) throws IOException {
+        QuerySelectionAlgorithm policy = Main.createPolicy(policyChoice);
+        String policyName = policy.getClass().getSimpleName();
+        Path outputDirectory = Files.createTempDirectory("throughput-benchmark");
+
+        try {
+            System.gc();
+            List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                    .filter(pool -> pool.getType() == MemoryType.HEAP)
+                    .toList();
+            heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+            // Only the simulation thread is counted: the asynchronous logger's writer thread is gone by the time run() returns
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+
+            Simulation.Result result = new Simulation(policy, maxRPS, Main.QUEUE_SIZE, seed, outputDirectory.toString(),
+                    policyName + "_" + maxRPS + "maxRPS").run();
+
+            long allocatedBytes = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            long peakHeapBytes = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+            double wallSeconds = Math.max(result.wallTimeMs(), 1) / 1000.0;
+            return new Row(policyName, result.queueSize(), maxRPS, seed, result.completedRequests(), result.simulationTimeMs(),
+                    result.wallTimeMs(), result.simulationTimeMs() / wallSeconds, result.completedRequests() / wallSeconds,
+                    peakHeapBytes, allocatedBytes);
+        } finally {
+            OutputDirectories.delete(outputDirectory);
+        }
+    }
+
+    private static void writeBaseline(Path baseline, List<Row> rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# java=" + System.getProperty("java.version") + ";os=" + System.getProperty("os.name") +
+                ";processors=" + Runtime.getRuntime().availableProcessors() + ";engine=" + Main.ENGINE +
+                ";loggerMode=" + Main.LOGGER_MODE + ";outputFormat=" + Main.OUTPUT_FORMAT +
+                ";simulationRequests=" + Main.SIMULATION_REQUESTS);
+        lines.add(HEADER);
+        for (Row row : rows) {
+            lines.add(row.format());
+        }
+        if (baseline.getParent() != null) {
+            Files.createDirectories(baseline.getParent());
+        }
+        Files.write(baseline, lines);
+    }
+
+    private static Map<String, Row> readBaseline(Path baseline) throws IOException {
+        Map<String, Row> rows = new HashMap<>();
+        for (String line : Files.readAllLines(baseline)) {
+            if (line.isBlank() || line.startsWith("#") || line.equals(HEADER)) {
+                continue;
+            }
+            Row row = Row.parse(line);
+            rows.put(row.key(), row);
+        }
+        return rows;
+    }
+
+    private static boolean compare(Map<String, Row> baseline, List<Row> rows, double tolerance) {
+        boolean passed = true;
+        for (Row row : rows) {
+            Row previous = baseline.get(row.key());
+            if (previous == null) {
+                System.out.println("NEW " + row.key());
+                continue;
+            }
+            if (previous.completedRequests != row.completedRequests || previous.simulationTimeMs != row.simulationTimeMs) {
+                System.out.println("CHANGED " + row.key() + ": simulation result differs from the baseline (" +
+                        previous.simulationTimeMs + " ms -> " + row.simulationTimeMs + " ms), throughput is not comparable");
+            }
+            isWorse("SLOWER", row.key(), "simMsPerWallSecond", previous.simMsPerWallSecond, row.simMsPerWallSecond, REPORT_THRESHOLD, true);
+            isWorse("SLOWER", row.key(), "requestsPerWallSecond", previous.requestsPerWallSecond, row.requestsPerWallSecond, REPORT_THRESHOLD, true);
+            isWorse("LARGER", row.key(), "peakHeapBytes", previous.peakHeapBytes, row.peakHeapBytes, REPORT_THRESHOLD, false);
+            passed &= !isWorse("REGRESSION", row.key(), "allocatedBytes", previous.allocatedBytes, row.allocatedBytes, tolerance, false);
+        }
+        System.out.println(passed ? "No allocation regressions beyond " + tolerance * 100 + "%" : "Regressions found");
+        return passed;
+    }
+
+    private static boolean isWorse(String label, String key, String metric, double previous, double current, double tolerance,
+                                   boolean higherIsBetter) {
+        double change = (previous == 0) ? 0 : (current - previous) / previous;
+        boolean worse = higherIsBetter ? change < -tolerance : change > tolerance;
+        if (worse) {
+            System.out.printf("%s %s %s: %.1f -> %.1f (%+.1f%%)%n", label, key, metric, previous, current, change * 100);
+        }
+        return worse;
+    }
+
+    private record Row(String policy, int queueSize, int maxRPS, long seed, int completedRequests, long simulationTimeMs,
+                       long wallTimeMs, double simMsPerWallSecond, double requestsPerWallSecond, long peakHeapBytes,
+                       long allocatedBytes) {
+
+        String key() {
+            return policy + "/" + queueSize + "queue/" + maxRPS + "maxRPS/" + seed + "seed";
+        }
+
+        String format() {
+            return policy + "\t" + queueSize + "\t" + maxRPS + "\t" + seed + "\t" + completedRequests + "\t" + simulationTimeMs +
+                    "\t" + wallTimeMs + "\t" + String.format(Locale.ROOT, "%.1f", simMsPerWallSecond) + "\t" + String.format(Locale.ROOT, "%.1f", requestsPerWallSecond) +
+                    "\t" + peakHeapBytes + "\t" + allocatedBytes;
+        }
+
+        static Row parse(String line) {
+            String[] columns = line.split("\t");
+            if (columns.length != 11) {
+                throw new IllegalArgumentException("Malformed baseline row: " + line);
+            }
+            return new Row(columns[0], Integer.parseInt(columns[1]), Integer.parseInt(columns[2]), Long.parseLong(columns[3]),
+                    Integer.parseInt(columns[4]), Long.parseLong(columns[5]), Long.parseLong(columns[6]),
+                    Double.parseDouble(columns[7]), Double.parseDouble(columns[8]), Long.parseLong(columns[9]),
+                    Long.parseLong(columns[10]));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of one simulated millisecond of the processor and a single drive, with nearly every process
+// blocked on a read: the time per tick should stay flat as processQuantity grows.
+// The first tick of every simulated second logs one request counter per process, which is proportional
+// to processQuantity by design, so it runs in the per-invocation setup and one invocation is the rest of the second.
+// Run with `java -jar benchmarks/target/benchmarks.jar ProcessorBenchmark`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorBenchmark {
+    private static final int TICKS_PER_INVOCATION = 999;
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int processQuantity;
+
+    @Param({"1", "4"})
+    public int cores;
+
+    private ProcessorWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        workload = (ProcessorWorkload) Class.forName("ProcessorTickWorkload").getDeclaredConstructor().newInstance();
+        workload.setUp(processQuantity, cores);
+    }
+
+    @Setup(Level.Invocation)
+    public void startSecond() {
+        workload.tick();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS_PER_INVOCATION)
+    public long tick() {
+        long time = 0;
+        for (int i = 0; i < TICKS_PER_INVOCATION; i++) {
+            time = workload.tick();
+        }
+        return time;
+    }
+}
@@ -0,0 +1,10 @@
+package benchmarks;
+
+// ProcessorBenchmark's view of ProcessorTickWorkload, which it loads by name
+public interface ProcessorWorkload {
+    void setUp(int processQuantity, int cores);
+
+    long tick();
+
+    void tearDown();
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Build with `mvn -B package`, then run `java -jar benchmarks/target/benchmarks.jar -prof gc`
+// to get ops/s together with the allocation rate. Narrow the grid with e.g. `-p policy=SSTF,TrackIndexedSSTF`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuerySelectionAlgorithmBenchmark {
+
+    @Param({"FCFS", "SSTF", "F_LOOK", "TrackIndexedSSTF", "SortedF_LOOK", "SPTF", "Deadline", "Adaptive"})
+    public String policy;
+
+    @Param({"20", "1000", "10000", "100000"})
+    public int queueSize;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public String distribution;
+
+    @Param({"0", "250", "499"})
+    public int headPosition;
+
+    private SchedulerWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        workload = (SchedulerWorkload) Class.forName("QuerySelectionAlgorithmWorkload").getDeclaredConstructor().newInstance();
+        workload.setUp(policy, queueSize, distribution, headPosition);
+    }
+
+    // One operation fills a fresh queue; addedRequests reports the per-request rate
+    @Benchmark
+    public int tryAddRequestToQueue(AddedRequests addedRequests) {
+        int added = workload.fillQueue();
+        addedRequests.addedRequests += added;
+        return added;
+    }
+
+    // The queue is kept at queueSize: every chosen request is replaced by a new one
+    @Benchmark
+    public Object chooseRequest() {
+        return workload.chooseRequestAndRefill();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class AddedRequests {
+        public long addedRequests;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            addedRequests = 0;
+        }
+    }
+}
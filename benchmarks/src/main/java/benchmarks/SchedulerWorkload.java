@@ -0,0 +1,10 @@
+package benchmarks;
+
+// Implemented in the simulator's unnamed package, which benchmark code cannot reference directly
+public interface SchedulerWorkload {
+    void setUp(String policy, int queueSize, String distribution, int headPosition);
+
+    int fillQueue();
+
+    Object chooseRequestAndRefill();
+}
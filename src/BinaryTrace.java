@@ -0,0 +1,177 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Layout: magic, version, column count, configuration length, configuration (UTF-8),
+// then fixed-width records of little-endian int32 columns
+public class BinaryTrace {
+    public static final int MAGIC = 0x54444448; // "HDDT"
+    public static final int VERSION = 1;
+
+    private static final int FIXED_HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int WRITE_BUFFER_BYTES = 1 << 20;
+
+    public static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final int columns;
+
+        public Writer(Path path, int columns, String configuration) throws IOException {
+            if (columns <= 0) {
+                throw new IllegalArgumentException("columns should be greater than 0");
+            }
+            this.columns = columns;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] configurationBytes = configuration.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(FIXED_HEADER_BYTES + configurationBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(columns).putInt(configurationBytes.length).put(configurationBytes);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        public void writeValue(int value) throws IOException {
+            ensureRecordFits(1);
+            buffer.putInt(value);
+        }
+
+        public void writeRepeatedValue(int value, int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                writeValue(value);
+            }
+        }
+
+        public void writePair(int first, int second) throws IOException {
+            ensureRecordFits(2);
+            buffer.putInt(first).putInt(second);
+        }
+
+        public void writeRow(int[] values) throws IOException {
+            ensureRecordFits(values.length);
+            for (int value : values) {
+                buffer.putInt(value);
+            }
+        }
+
+        private void ensureRecordFits(int recordColumns) throws IOException {
+            if (recordColumns != columns) {
+                throw new IllegalArgumentException("Expected " + columns + " columns, got " + recordColumns);
+            }
+            if (buffer.remaining() < recordColumns * Integer.BYTES) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            channel.close();
+        }
+    }
+
+    public static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final int columns;
+        private final String configuration;
+        private final long recordCount;
+        private final long recordsPerSegment;
+        private final MappedByteBuffer[] segments;
+
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+            ByteBuffer fixedHeader = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(fixedHeader, 0);
+            if (fixedHeader.getInt(0) != MAGIC) {
+                throw new IOException("Not a binary trace: " + path);
+            }
+            if (fixedHeader.getInt(4) != VERSION) {
+                throw new IOException("Unsupported binary trace version " + fixedHeader.getInt(4) + ": " + path);
+            }
+            this.columns = fixedHeader.getInt(8);
+
+            ByteBuffer configurationBytes = ByteBuffer.allocate(fixedHeader.getInt(12));
+            readFully(configurationBytes, FIXED_HEADER_BYTES);
+            this.configuration = new String(configurationBytes.array(), StandardCharsets.UTF_8);
+
+            long dataOffset = FIXED_HEADER_BYTES + configurationBytes.capacity();
+            int recordBytes = columns * Integer.BYTES;
+            this.recordCount = (channel.size() - dataOffset) / recordBytes;
+            this.recordsPerSegment = Integer.MAX_VALUE / recordBytes;
+
+            int segmentCount = (int) ((recordCount + recordsPerSegment - 1) / recordsPerSegment);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long firstRecord = i * recordsPerSegment;
+                long segmentRecords = Math.min(recordsPerSegment, recordCount - firstRecord);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + firstRecord * recordBytes, segmentRecords * recordBytes);
+                segments[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        private void readFully(ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    throw new IOException("Unexpected end of binary trace");
+                }
+            }
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        public String getConfiguration() {
+            return configuration;
+        }
+
+        public long getRecordCount() {
+            return recordCount;
+        }
+
+        public int get(long record, int column) {
+            if (record < 0 || record >= recordCount || column < 0 || column >= columns) {
+                throw new IndexOutOfBoundsException("record " + record + ", column " + column);
+            }
+            MappedByteBuffer segment = segments[(int) (record / recordsPerSegment)];
+            int offset = (int) (record % recordsPerSegment) * columns * Integer.BYTES + column * Integer.BYTES;
+            return segment.getInt(offset);
+        }
+
+        public void forEach(RecordConsumer consumer) {
+            for (long record = 0; record < recordCount; record++) {
+                consumer.accept(record, this);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public interface RecordConsumer {
+        void accept(long record, Reader reader);
+    }
+}
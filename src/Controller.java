@@ -1,51 +1,231 @@
+import java.util.ArrayDeque;
+import java.util.List;
 import java.util.function.BiConsumer;
 
 class Controller {
     private final HardDrive hardDrive;
     private final QuerySelectionAlgorithm querySelectionAlgorithm;
     private final BiConsumer<Query, Integer> onRequestCompleted;
+    private final Metrics metrics;
+    private final TrackCache trackCache;
+    private final WriteBackCache writeBack;
+    private final RequestMerger merger;
+    // Buffered writes, acknowledged on the next tick
+    private final ArrayDeque<Query> acknowledgements = new ArrayDeque<>();
+    private long time = 0;
     private int requestCompletionTime = 0;
+    // Requests served by the same operation as the one under execution
+    private List<Query> mergedRequests = List.of();
+    private boolean hasQueuedRequests = false;
     private State state = new State.Idle();
 
-    public Controller(HardDrive hardDrive, QuerySelectionAlgorithm querySelectionAlgorithm, BiConsumer<Query, Integer> onRequestCompleted) {
+    public Controller(HardDrive hardDrive, QuerySelectionAlgorithm querySelectionAlgorithm, BiConsumer<Query, Integer> onRequestCompleted,
+                      Metrics metrics) {
+        this(hardDrive, querySelectionAlgorithm, onRequestCompleted, metrics, null);
+    }
+
+    public Controller(HardDrive hardDrive, QuerySelectionAlgorithm querySelectionAlgorithm, BiConsumer<Query, Integer> onRequestCompleted,
+                      Metrics metrics, TrackCache trackCache) {
+        this(hardDrive, querySelectionAlgorithm, onRequestCompleted, metrics, trackCache, null, null);
+    }
+
+    // Without a track cache every request goes to the platter, without a write-back cache every write waits for it,
+    // without a merger every request takes its own slot in the queue and its own pass over the track
+    public Controller(HardDrive hardDrive, QuerySelectionAlgorithm querySelectionAlgorithm, BiConsumer<Query, Integer> onRequestCompleted,
+                      Metrics metrics, TrackCache trackCache, WriteBackCache writeBack, RequestMerger merger) {
         this.hardDrive = hardDrive;
         this.querySelectionAlgorithm = querySelectionAlgorithm;
         this.onRequestCompleted = onRequestCompleted;
+        this.metrics = metrics;
+        this.trackCache = trackCache;
+        this.writeBack = writeBack;
+        this.merger = merger;
     }
 
     public void addRequestToQueue(Query query) throws QuerySelectionAlgorithm.QueueFullException {
-        querySelectionAlgorithm.tryAddRequestToQueue(query);
+        if (canBuffer(query)) {
+            writeBack.write(query.getSectorNumber(), time);
+            acknowledgements.addLast(query);
+            return;
+        }
+        if (merger != null && merger.tryMerge(query)) {
+            return;
+        }
+
+        try {
+            querySelectionAlgorithm.tryAddRequestToQueue(query);
+        } catch (QuerySelectionAlgorithm.QueueFullException exception) {
+            metrics.requestRejected();
+            throw exception;
+        }
+        if (merger != null) {
+            merger.queued(query);
+        }
+        metrics.requestQueued();
+        hasQueuedRequests = true;
+    }
+
+    private boolean canBuffer(Query query) {
+        return writeBack != null && query.getType() == Query.Type.WRITE && writeBack.canBuffer(query.getSectorNumber());
+    }
+
+    public boolean canAccept(Query query) {
+        return canBuffer(query) || (merger != null && merger.canMerge(query)) || !querySelectionAlgorithm.isFull();
+    }
+
+    public int getTicksUntilNextEvent() {
+        if (!acknowledgements.isEmpty() || state instanceof State.ReadingFromCache) {
+            return 1;
+        }
+        if (state instanceof State.ExecutingRequest) {
+            Query queryUnderExecution = ((State.ExecutingRequest) state).getRequest();
+            return hardDrive.isReadyAt(queryUnderExecution.getTrackNumber())
+                    ? 1
+                    : Integer.MAX_VALUE;
+        }
+        if (state instanceof State.Flushing) {
+            return hardDrive.isReadyAt(((State.Flushing) state).getExtent().getTrackNumber())
+                    ? 1
+                    : Integer.MAX_VALUE;
+        }
+        return (hasQueuedRequests || (writeBack != null && !writeBack.isEmpty())) ? 1 : Integer.MAX_VALUE;
+    }
+
+    public void skip(int ticks) {
+        time += ticks;
+        if (state instanceof State.ExecutingRequest || state instanceof State.ReadingFromCache) {
+            requestCompletionTime += ticks;
+        }
     }
 
     public void tick() {
+        time++;
+        Query acknowledged;
+        while ((acknowledged = acknowledgements.pollFirst()) != null) {
+            onRequestCompleted.accept(acknowledged, 1);
+        }
+
         if (state instanceof State.Idle) {
             executeRequestFromQueue();
         } else if (state instanceof State.ExecutingRequest) {
             requestCompletionTime++;
             Query queryUnderExecution = ((State.ExecutingRequest) state).getRequest();
-            if (hardDrive.getState().equals(new HardDrive.State.IdleState(queryUnderExecution.getTrackNumber(), true))) {
+            if (hardDrive.isReadyAt(queryUnderExecution.getTrackNumber())) {
                 hardDrive.doOperationOnCurrentSector();
-                onRequestCompleted.accept(queryUnderExecution, requestCompletionTime);
+                if (trackCache != null && queryUnderExecution.getType() == Query.Type.READ) {
+                    trackCache.load(queryUnderExecution.getTrackNumber());
+                }
+                complete(queryUnderExecution);
+
+                executeRequestFromQueue();
+            }
+        } else if (state instanceof State.ReadingFromCache) {
+            requestCompletionTime++;
+            complete(((State.ReadingFromCache) state).getRequest());
 
-                queryUnderExecution.getProcess().deliverRequestResult(queryUnderExecution);
+            executeRequestFromQueue();
+        } else if (state instanceof State.Flushing) {
+            WriteBackCache.Extent extent = ((State.Flushing) state).getExtent();
+            if (hardDrive.isReadyAt(extent.getTrackNumber())) {
+                hardDrive.doOperationOnCurrentSector();
+                writeBack.flushed(extent, time);
 
                 executeRequestFromQueue();
             }
         }
     }
 
+    // Above the high watermark dirty sectors go to the platter ahead of the queue, otherwise only when it is empty
     private void executeRequestFromQueue() {
-        Query queryToBeExecuted = querySelectionAlgorithm.chooseRequest(hardDrive.getState().getPosition());
+        if (writeBack != null && writeBack.isDraining()) {
+            flush();
+            return;
+        }
+
+        Query queryToBeExecuted = querySelectionAlgorithm.chooseRequest(hardDrive);
+        mergedRequests = (queryToBeExecuted != null && merger != null) ? merger.dispatched(queryToBeExecuted) : List.of();
 
-        if (queryToBeExecuted != null) {
-            hardDrive.moveDriveTo(queryToBeExecuted.getTrackNumber());
+        if (queryToBeExecuted != null && writeBack != null && queryToBeExecuted.getType() == Query.Type.READ
+                && isDirty(queryToBeExecuted)) {
+            // The latest data of a dirty sector is in the buffer
+            metrics.writeBackReadHit();
+            metrics.requestDispatched(0);
+            requestCompletionTime = 0;
+            state = new State.ReadingFromCache(queryToBeExecuted);
+        } else if (queryToBeExecuted != null && trackCache != null && queryToBeExecuted.getType() == Query.Type.READ
+                && trackCache.lookup(queryToBeExecuted.getTrackNumber())) {
+            // Served from the drive buffer within a tick, the head stays where it is
+            metrics.requestDispatched(0);
+            requestCompletionTime = 0;
+            state = new State.ReadingFromCache(queryToBeExecuted);
+        } else if (queryToBeExecuted != null) {
+            metrics.requestDispatched(Math.abs(queryToBeExecuted.getTrackNumber() - hardDrive.getPosition()));
+            hardDrive.moveDriveToSector(getLastSectorOfPass(queryToBeExecuted));
             requestCompletionTime = 0;
             state = new State.ExecutingRequest(queryToBeExecuted);
         } else {
-            state = new State.Idle();
+            hasQueuedRequests = false;
+            if (writeBack != null && !writeBack.isEmpty()) {
+                flush();
+            } else {
+                state = new State.Idle();
+            }
         }
     }
 
+    private boolean isDirty(Query query) {
+        if (!writeBack.contains(query.getSectorNumber())) {
+            return false;
+        }
+        for (Query mergedRequest : mergedRequests) {
+            if (!writeBack.contains(mergedRequest.getSectorNumber())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void complete(Query query) {
+        onRequestCompleted.accept(query, requestCompletionTime);
+        for (Query mergedRequest : mergedRequests) {
+            onRequestCompleted.accept(mergedRequest, requestCompletionTime);
+        }
+        mergedRequests = List.of();
+    }
+
+    // The whole extent lies on one track and is written in a single pass over it
+    private void flush() {
+        WriteBackCache.Extent extent = writeBack.takeNextExtent(hardDrive.getPosition());
+        hardDrive.moveDriveToSector(getLastSectorOfPass(extent));
+        state = new State.Flushing(extent);
+    }
+
+    // With the rotational position model the sectors of a track are served in the order they pass under the head,
+    // so an operation on several of them is done when the last one to come round after the head arrives has passed
+    private int getLastSectorOfPass(Query query) {
+        int lastSector = query.getSectorNumber();
+        if (hardDrive.hasRotationalPositionModel()) {
+            for (Query mergedRequest : mergedRequests) {
+                lastSector = getLaterSector(lastSector, mergedRequest.getSectorNumber());
+            }
+        }
+        return lastSector;
+    }
+
+    private int getLastSectorOfPass(WriteBackCache.Extent extent) {
+        int lastSector = extent.getStartSector();
+        if (hardDrive.hasRotationalPositionModel()) {
+            for (int sector = extent.getStartSector() + 1; sector < extent.getStartSector() + extent.getLength(); sector++) {
+                lastSector = getLaterSector(lastSector, sector);
+            }
+        }
+        return lastSector;
+    }
+
+    private int getLaterSector(int sector, int otherSector) {
+        return (hardDrive.getPositioningTime(otherSector) > hardDrive.getPositioningTime(sector)) ? otherSector : sector;
+    }
+
     public abstract static class State {
         public State() {
         }
@@ -66,5 +246,29 @@ class Controller {
                 return query;
             }
         }
+
+        public static class ReadingFromCache extends State {
+            private final Query query;
+
+            public ReadingFromCache(Query query) {
+                this.query = query;
+            }
+
+            public Query getRequest() {
+                return query;
+            }
+        }
+
+        public static class Flushing extends State {
+            private final WriteBackCache.Extent extent;
+
+            public Flushing(WriteBackCache.Extent extent) {
+                this.extent = extent;
+            }
+
+            public WriteBackCache.Extent getExtent() {
+                return extent;
+            }
+        }
     }
 }
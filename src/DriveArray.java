@@ -0,0 +1,328 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+// Maps logical sectors onto member drives, each with its own Controller and scheduler queue.
+// Members only interact through request submission and completion, so within a tick they can be
+// advanced on separate threads; completions are buffered per member and delivered afterwards in
+// member order, which keeps the run identical to the sequential one
+public class DriveArray {
+    private final Level level;
+    private final int stripeSectors;
+    private final HardDrive[] drives;
+    private final Controller[] controllers;
+    private final Metrics[] memberMetrics;
+    private final BiConsumer<Query, Integer> onRequestCompleted;
+    private long time = 0;
+
+    private final List<ArrayDeque<Completion>> completions = new ArrayList<>();
+    private final Map<Query, Request> requestsByMemberQuery = new IdentityHashMap<>();
+
+    private ExecutorService executor = null;
+    private final List<Callable<Void>> memberTicks = new ArrayList<>();
+
+    public DriveArray(Level level, List<QuerySelectionAlgorithm> policies, int stripeSectors, int threads,
+                      BiConsumer<Query, Integer> onRequestCompleted, Metrics metrics) {
+        this(level, policies, stripeSectors, threads, Main.WRITE_BACK_CACHE_SECTORS, onRequestCompleted, metrics);
+    }
+
+    public DriveArray(Level level, List<QuerySelectionAlgorithm> policies, int stripeSectors, int threads, int writeBackSectors,
+                      BiConsumer<Query, Integer> onRequestCompleted, Metrics metrics) {
+        int members = policies.size();
+        if (members == 0) {
+            throw new IllegalArgumentException("Drive array should have at least one member");
+        }
+        if (level == Level.RAID_10 && members % 2 != 0) {
+            throw new IllegalArgumentException("RAID_10 needs an even number of members, got " + members);
+        }
+        if (stripeSectors <= 0) {
+            throw new IllegalArgumentException("stripeSectors should be greater than 0");
+        }
+
+        this.level = level;
+        this.stripeSectors = stripeSectors;
+        this.onRequestCompleted = onRequestCompleted;
+        this.drives = new HardDrive[members];
+        this.controllers = new Controller[members];
+        this.memberMetrics = new Metrics[members];
+
+        for (int i = 0; i < members; i++) {
+            Metrics memberMetrics = new Metrics(List.of());
+            metrics.addMember(memberMetrics);
+            this.memberMetrics[i] = memberMetrics;
+
+            ArrayDeque<Completion> memberCompletions = new ArrayDeque<>();
+            completions.add(memberCompletions);
+
+            drives[i] = new HardDrive(new SectorBitmap((long) Main.TRACK_QUANTITY * Main.SECTORS_PER_TRACK), Main.ROTATIONAL_POSITION_MODEL,
+                    memberMetrics);
+            TrackCache trackCache = (Main.TRACK_CACHE_TRACKS > 0)
+                    ? new TrackCache(Main.TRACK_CACHE_TRACKS, Main.TRACK_READ_AHEAD_TRACKS, Main.TRACK_QUANTITY, memberMetrics)
+                    : null;
+            WriteBackCache writeBack = (writeBackSectors > 0)
+                    ? new WriteBackCache(writeBackSectors, Main.WRITE_BACK_HIGH_WATERMARK, Main.WRITE_BACK_LOW_WATERMARK, memberMetrics)
+                    : null;
+            RequestMerger merger = Main.MERGE_ADJACENT_REQUESTS ? new RequestMerger(memberMetrics) : null;
+            controllers[i] = new Controller(drives[i], policies.get(i),
+                    (memberQuery, completionTime) -> memberCompletions.addLast(new Completion(memberQuery, completionTime)),
+                    memberMetrics, trackCache, writeBack, merger);
+
+            HardDrive drive = drives[i];
+            Controller controller = controllers[i];
+            memberTicks.add(() -> {
+                controller.tick();
+                drive.tick();
+                return null;
+            });
+        }
+
+        if (threads > 1 && members > 1) {
+            executor = Executors.newFixedThreadPool(Math.min(threads, members), runnable -> {
+                Thread thread = new Thread(runnable, "drive-array-member");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getMemberCount() {
+        return drives.length;
+    }
+
+    public int getDrivePosition(int member) {
+        return drives[member].getPosition();
+    }
+
+    // Logical sectors the array can address: the stripe members side by side
+    public int getLogicalSectors() {
+        return getStripeMembers() * Main.TRACK_QUANTITY * Main.SECTORS_PER_TRACK;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void markAllocated(int logicalSector) {
+        int memberSector = getMemberSector(logicalSector);
+        int firstMember = getFirstMember(logicalSector);
+        for (int i = 0; i < getCopies(); i++) {
+            drives[firstMember + i].markAllocated(memberSector);
+        }
+    }
+
+    public void addRequestToQueue(Query query) throws QuerySelectionAlgorithm.QueueFullException {
+        query.setArrivalTime(time);
+        int memberSector = getMemberSector(query.getSectorNumber());
+        int firstMember = getFirstMember(query.getSectorNumber());
+        int copies = getCopies();
+
+        if (copies == 1 || query.getType() == Query.Type.READ) {
+            int member = (copies == 1) ? firstMember : getClosestMember(firstMember, copies, memberSector / Main.SECTORS_PER_TRACK);
+            Query memberQuery = (memberSector == query.getSectorNumber())
+                    ? query
+                    : query.atSector(memberSector);
+            memberQuery.setArrivalTime(time);
+            controllers[member].addRequestToQueue(memberQuery);
+            if (memberQuery != query) {
+                requestsByMemberQuery.put(memberQuery, new Request(query, 1));
+            }
+            return;
+        }
+
+        // A mirrored write must fit into every copy: the first member that can not take it rejects it,
+        // and counts the rejection, before any copy is queued
+        Query[] memberQueries = new Query[copies];
+        for (int i = 0; i < copies; i++) {
+            memberQueries[i] = query.atSector(memberSector);
+            memberQueries[i].setArrivalTime(time);
+            if (!controllers[firstMember + i].canAccept(memberQueries[i])) {
+                memberMetrics[firstMember + i].requestRejected();
+                throw new QuerySelectionAlgorithm.QueueFullException();
+            }
+        }
+        Request request = new Request(query, copies);
+        for (int i = 0; i < copies; i++) {
+            requestsByMemberQuery.put(memberQueries[i], request);
+            controllers[firstMember + i].addRequestToQueue(memberQueries[i]);
+        }
+    }
+
+    // Whether addRequestToQueue would take the request now
+    public boolean canAccept(Query query) {
+        int memberSector = getMemberSector(query.getSectorNumber());
+        int firstMember = getFirstMember(query.getSectorNumber());
+        int copies = getCopies();
+
+        if (copies == 1 || query.getType() == Query.Type.READ) {
+            int member = (copies == 1) ? firstMember : getClosestMember(firstMember, copies, memberSector / Main.SECTORS_PER_TRACK);
+            return controllers[member].canAccept(query.atSector(memberSector));
+        }
+        for (int i = 0; i < copies; i++) {
+            if (!controllers[firstMember + i].canAccept(query.atSector(memberSector))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int getCopies() {
+        return switch (level) {
+            case RAID_0 -> 1;
+            case RAID_1 -> drives.length;
+            case RAID_10 -> 2;
+        };
+    }
+
+    private int getStripeMembers() {
+        return drives.length / getCopies();
+    }
+
+    private int getFirstMember(int logicalSector) {
+        return (logicalSector / stripeSectors) % getStripeMembers() * getCopies();
+    }
+
+    private int getMemberSector(int logicalSector) {
+        int stripe = logicalSector / stripeSectors;
+        return (stripe / getStripeMembers()) * stripeSectors + logicalSector % stripeSectors;
+    }
+
+    // Ties go to the lower member
+    private int getClosestMember(int firstMember, int copies, int track) {
+        int closest = firstMember;
+        for (int member = firstMember + 1; member < firstMember + copies; member++) {
+            if (Math.abs(drives[member].getPosition() - track) < Math.abs(drives[closest].getPosition() - track)) {
+                closest = member;
+            }
+        }
+        return closest;
+    }
+
+    public int getTicksUntilNextEvent() {
+        int ticksUntilNextEvent = Integer.MAX_VALUE;
+        for (int i = 0; i < drives.length; i++) {
+            ticksUntilNextEvent = Math.min(ticksUntilNextEvent,
+                    Math.min(controllers[i].getTicksUntilNextEvent(), drives[i].getTicksUntilNextEvent()));
+        }
+        return ticksUntilNextEvent;
+    }
+
+    public void skip(int ticks) {
+        for (int i = 0; i < drives.length; i++) {
+            controllers[i].skip(ticks);
+            drives[i].skip(ticks);
+        }
+        time += ticks;
+    }
+
+    // Handing a tick to the pool only pays off when several controllers have work to do in it
+    public void tick() {
+        if (executor == null || countControllersWithWork() < 2) {
+            for (int i = 0; i < drives.length; i++) {
+                controllers[i].tick();
+                drives[i].tick();
+            }
+        } else {
+            try {
+                for (Future<Void> future : executor.invokeAll(memberTicks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Drive array tick was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Drive array member failed", e.getCause());
+            }
+        }
+
+        deliverCompletions();
+        time++;
+    }
+
+    private int countControllersWithWork() {
+        int count = 0;
+        for (Controller controller : controllers) {
+            if (controller.getTicksUntilNextEvent() == 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void deliverCompletions() {
+        for (ArrayDeque<Completion> memberCompletions : completions) {
+            Completion completion;
+            while ((completion = memberCompletions.pollFirst()) != null) {
+                Request request = requestsByMemberQuery.remove(completion.memberQuery());
+                if (request == null) {
+                    onRequestCompleted.accept(completion.memberQuery(), completion.completionTime());
+                    continue;
+                }
+
+                request.remainingCopies--;
+                request.completionTime = Math.max(request.completionTime, completion.completionTime());
+                if (request.remainingCopies == 0) {
+                    onRequestCompleted.accept(request.query, request.completionTime);
+                }
+            }
+        }
+    }
+
+    public void writeState(Writer writer) throws IOException {
+        for (int i = 0; i < drives.length; i++) {
+            if (drives.length > 1) {
+                writer.write("Drive №" + i + "\n");
+            }
+            drives[i].writeState(writer);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeState(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private record Completion(Query memberQuery, int completionTime) {
+    }
+
+    // A logical request completes when its last copy does, with the slowest copy's completion time
+    private static class Request {
+        private final Query query;
+        private int remainingCopies;
+        private int completionTime = 0;
+
+        private Request(Query query, int copies) {
+            this.query = query;
+            this.remainingCopies = copies;
+        }
+    }
+
+    public enum Level {
+        RAID_0,
+        RAID_1,
+        RAID_10
+    }
+}
@@ -0,0 +1,74 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.function.LongToIntFunction;
+
+// Drive position read back from a DRIVE_POSITION_CHANGES log, where each change point holds from its
+// time until the next one. A binary trace is searched where it is mapped; a text log, one "time\tposition"
+// line per change point, is read into two arrays once and searched there
+public class DrivePositionChanges {
+    private final int[] times;
+    private final int[] positions;
+
+    private DrivePositionChanges(int[] times, int[] positions) {
+        this.times = times;
+        this.positions = positions;
+    }
+
+    public static DrivePositionChanges readText(Path path) throws IOException {
+        int[] times = new int[1024];
+        int[] positions = new int[1024];
+        int size = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    throw new IOException("Not a change point: " + line);
+                }
+                if (size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                    positions = Arrays.copyOf(positions, size * 2);
+                }
+                times[size] = Integer.parseInt(line, 0, tab, 10);
+                positions[size] = Integer.parseInt(line, tab + 1, line.length(), 10);
+                size++;
+            }
+        }
+        return new DrivePositionChanges(Arrays.copyOf(times, size), Arrays.copyOf(positions, size));
+    }
+
+    public int positionAt(int time) {
+        return positions[(int) lastChangeAtOrBefore(times.length, index -> times[(int) index], time)];
+    }
+
+    public static int positionAt(BinaryTrace.Reader trace, int time) {
+        return trace.get(lastChangeAtOrBefore(trace.getRecordCount(), index -> trace.get(index, 0), time), 1);
+    }
+
+    // Binary search over change points ordered by time
+    private static long lastChangeAtOrBefore(long changes, LongToIntFunction timeOf, int time) {
+        long low = 0;
+        long high = changes - 1;
+        long found = -1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            if (timeOf.applyAsInt(middle) <= time) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        if (found < 0) {
+            throw new IllegalArgumentException("No position recorded at or before " + time);
+        }
+        return found;
+    }
+}
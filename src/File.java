@@ -1,30 +1,98 @@
 import java.util.Arrays;
+import java.util.function.IntConsumer;
 
 public class File {
     private final Type type;
     private final int size;
-    private final int[] blocks;
+    private final int blockCount;
+
+    // Blocks as runs of consecutive sectors: extent e starts at sector extentStarts[e] and holds blocks
+    // extentOffsets[e] until extentOffsets[e + 1] of the file. When the runs are too short for that to be
+    // smaller than the blocks themselves, every block is its own extent and extentOffsets is null
+    private final int[] extentStarts;
+    private final int[] extentOffsets;
 
     public File(Type type, int size, int[] blocks) {
         this.type = type;
         this.size = size;
-        this.blocks = Arrays.copyOf(blocks, blocks.length);
+        this.blockCount = blocks.length;
+
+        int extentCount = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            if (i == 0 || blocks[i] != blocks[i - 1] + 1) {
+                extentCount++;
+            }
+        }
+
+        if (2 * extentCount + 1 >= blocks.length) {
+            this.extentStarts = Arrays.copyOf(blocks, blocks.length);
+            this.extentOffsets = null;
+            return;
+        }
+
+        this.extentStarts = new int[extentCount];
+        this.extentOffsets = new int[extentCount + 1];
+        int extent = -1;
+        for (int i = 0; i < blocks.length; i++) {
+            if (i == 0 || blocks[i] != blocks[i - 1] + 1) {
+                extent++;
+                extentStarts[extent] = blocks[i];
+                extentOffsets[extent] = i;
+            }
+        }
+        extentOffsets[extentCount] = blocks.length;
     }
 
     public Type getType() {
         return type;
     }
 
-    public int[] getBlocks() {
-        return Arrays.copyOf(blocks, blocks.length);
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    // Sector of the index-th block of the file
+    public int getBlock(int index) {
+        if (index < 0 || index >= blockCount) {
+            throw new IndexOutOfBoundsException("Block " + index + " out of bounds for " + blockCount + " blocks");
+        }
+        if (extentOffsets == null) {
+            return extentStarts[index];
+        }
+
+        int extent = Arrays.binarySearch(extentOffsets, 0, extentStarts.length, index);
+        if (extent < 0) {
+            extent = -extent - 2;
+        }
+        return extentStarts[extent] + index - extentOffsets[extent];
+    }
+
+    public void forEachBlock(IntConsumer action) {
+        if (extentOffsets == null) {
+            for (int block : extentStarts) {
+                action.accept(block);
+            }
+            return;
+        }
+
+        for (int extent = 0; extent < extentStarts.length; extent++) {
+            int length = extentOffsets[extent + 1] - extentOffsets[extent];
+            for (int i = 0; i < length; i++) {
+                action.accept(extentStarts[extent] + i);
+            }
+        }
     }
 
     @Override
     public String toString() {
+        StringBuilder blocks = new StringBuilder("[");
+        forEachBlock(block -> blocks.append((blocks.length() == 1) ? "" : ", ").append(block));
+        blocks.append("]");
+
         return "File{" +
                 "type=" + type +
                 ", size=" + size +
-                ", blocks=" + Arrays.toString(blocks) +
+                ", blocks=" + blocks +
                 '}';
     }
 
@@ -33,4 +101,4 @@ public class File {
         MEDIUM, // Середні файли (від 11 до 150 блоків)
         LARGE // Великі файли (від 151 до 500 блоків)
     }
-}
\ No newline at end of file
+}
@@ -1,89 +1,276 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
 public class HardDrive {
     private static final int DEFAULT_MOVEMENT_TIME_PER_TRACK_MS = 10;
     private static final int DEFAULT_ROTATIONAL_LATENCY_MS = 8;
     private static final int DEFAULT_MOVEMENT_TIME_BETWEEN_FIRST_AND_OUTER_TRACK_MS = 130;
 
-    private final boolean[][] tracks;
+    private final SectorBitmap allocatedSectors;
     private final int movementTimePerTrackMs;
     private final int rotationalLatencyMs;
     private final int movementTimeBetweenFirstAndOuterTrack;
+    // With the rotational position model the platter turns once per rotationPeriodMs and an operation waits
+    // until its sector comes under the head; without it every operation waits a flat rotationalLatencyMs
+    private final boolean rotationalPositionModel;
+    private final int rotationPeriodMs;
+    private final Metrics metrics;
+
+    private Mode mode = Mode.IDLE;
+    private int position = 0;
+    private int targetPosition = 0;
+    private int progress = 0;
+    private boolean ready = false;
+    private long time = 0;
+    // Angle the rotation waits for, -1 for a flat wait
+    private int targetAngle = -1;
 
-    private State state;
+    public HardDrive(SectorBitmap allocatedSectors, Metrics metrics) {
+        this(allocatedSectors, false, metrics);
+    }
 
-    public HardDrive(boolean[][] tracks) {
-        this(tracks, DEFAULT_MOVEMENT_TIME_PER_TRACK_MS, DEFAULT_ROTATIONAL_LATENCY_MS, DEFAULT_MOVEMENT_TIME_BETWEEN_FIRST_AND_OUTER_TRACK_MS);
+    public HardDrive(SectorBitmap allocatedSectors, boolean rotationalPositionModel, Metrics metrics) {
+        this(allocatedSectors, DEFAULT_MOVEMENT_TIME_PER_TRACK_MS, DEFAULT_ROTATIONAL_LATENCY_MS, DEFAULT_MOVEMENT_TIME_BETWEEN_FIRST_AND_OUTER_TRACK_MS,
+                rotationalPositionModel, metrics);
     }
 
-    public HardDrive(boolean[][] tracks, int movementTimePerTrackMs, int rotationalLatencyMs, int movementTimeBetweenFirstAndOuterTrack) {
-        this.tracks = tracks;
+    // The rotational latency is the average wait, half a rotation
+    public HardDrive(SectorBitmap allocatedSectors, int movementTimePerTrackMs, int rotationalLatencyMs, int movementTimeBetweenFirstAndOuterTrack,
+                     boolean rotationalPositionModel, Metrics metrics) {
+        this.allocatedSectors = allocatedSectors;
         this.movementTimePerTrackMs = movementTimePerTrackMs;
         this.rotationalLatencyMs = rotationalLatencyMs;
         this.movementTimeBetweenFirstAndOuterTrack = movementTimeBetweenFirstAndOuterTrack;
-        this.state = new State.IdleState(0, false);
+        this.rotationalPositionModel = rotationalPositionModel;
+        this.rotationPeriodMs = 2 * rotationalLatencyMs;
+        this.metrics = metrics;
+    }
+
+    public void moveDriveToSector(int sector) {
+        moveDriveTo(sector / Main.SECTORS_PER_TRACK);
+        if (rotationalPositionModel) {
+            targetAngle = getSectorAngle(sector);
+        }
     }
 
     public void moveDriveTo(int targetTrack) {
-        state = (state.getPosition() == targetTrack) ?
-                new State.WaitingForRotationState(state.getPosition(), 1) :
-                new State.MovingState(state.getPosition(), targetTrack, 1);
+        targetAngle = -1;
+        if (position == targetTrack) {
+            waitForRotation(1);
+        } else {
+            mode = Mode.MOVING;
+            targetPosition = targetTrack;
+            progress = 1;
+        }
     }
 
     public void doOperationOnCurrentSector() {
-        if (state instanceof State.IdleState && ((State.IdleState) state).isReady()) {
-            state = new State.IdleState(state.position, false);
+        if (mode == Mode.IDLE && ready) {
+            ready = false;
         } else {
             throw new IllegalStateException("Can not do operation when drive is not ready!");
         }
     }
 
+    public void markAllocated(int sector) {
+        allocatedSectors.set(sector);
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public boolean isReadyAt(int track) {
+        return mode == Mode.IDLE && ready && position == track;
+    }
+
+    // Ticks since the drive started
+    public long getTime() {
+        return time;
+    }
+
+    public boolean hasRotationalPositionModel() {
+        return rotationalPositionModel;
+    }
+
+    private int getSectorAngle(int sector) {
+        return (sector % Main.SECTORS_PER_TRACK) * rotationPeriodMs / Main.SECTORS_PER_TRACK;
+    }
+
+    private int getAngle(long time) {
+        return (int) (time % rotationPeriodMs);
+    }
+
+    // Ticks from moveDriveToSector until the operation can be done on the track, before any rotational wait
+    public int getMinimumPositioningTime(int track) {
+        int distance = Math.abs(track - position);
+        return (distance == 0) ? 1 : movementTimePerTrackMs * distance + 2;
+    }
+
+    // Ticks from moveDriveToSector(sector) until the operation on the sector, exactly as tick plays it out
+    public int getPositioningTime(int sector) {
+        int minimumTime = getMinimumPositioningTime(sector / Main.SECTORS_PER_TRACK);
+        if (!rotationalPositionModel) {
+            return minimumTime + rotationalLatencyMs - 1;
+        }
+        return minimumTime + Math.floorMod(getSectorAngle(sector) - getAngle(time + minimumTime), rotationPeriodMs);
+    }
+
+    // The first sector of `track` that passes under the head once the head can reach it, or the first
+    // sector of the next track when the head arrives after the last sector has passed
+    public int getFirstReachableSector(int track) {
+        int firstSector = track * Main.SECTORS_PER_TRACK;
+        if (!rotationalPositionModel) {
+            return firstSector;
+        }
+        int arrivalAngle = getAngle(time + getMinimumPositioningTime(track));
+        return firstSector + (arrivalAngle * Main.SECTORS_PER_TRACK + rotationPeriodMs - 1) / rotationPeriodMs;
+    }
+
     public State getState() {
-        return state;
+        return switch (mode) {
+            case IDLE -> new State.IdleState(position, ready);
+            case MOVING -> new State.MovingState(position, targetPosition, progress);
+            case WAITING_FOR_ROTATION -> new State.WaitingForRotationState(position, progress);
+        };
+    }
+
+    public SectorBitmap getAllocatedSectors() {
+        return allocatedSectors;
+    }
+
+    // One line per track, written as it goes
+    public void writeState(Writer writer) throws IOException {
+        long trackQuantity = allocatedSectors.size() / Main.SECTORS_PER_TRACK;
+        StringBuilder line = new StringBuilder();
+        for (long i = 0; i < trackQuantity; i++) {
+            line.setLength(0);
+            line.append(i);
+            for (int j = 0; j < Main.SECTORS_PER_TRACK; j++) {
+                line.append(" ").append(j).append(":").append(allocatedSectors.get(i * Main.SECTORS_PER_TRACK + j));
+            }
+            line.append("\n");
+            writer.append(line);
+        }
     }
 
     @Override
     public String toString() {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int i = 0; i < tracks.length; i++) {
-            stringBuilder.append(i);
-            for (int j = 0; j < tracks[i].length; j++) {
-                stringBuilder.append(" ").append(j).append(":").append(tracks[i][j]);
-            }
-            stringBuilder.append("\n");
+        StringWriter writer = new StringWriter();
+        try {
+            writeState(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return stringBuilder.toString();
+        return writer.toString();
     }
 
     public void tick() {
-        if (state instanceof State.IdleState && !((State.IdleState) state).isReady()) {
-            state = new State.WaitingForRotationState(state.getPosition(), 1);
-        } else if (state instanceof State.MovingState movingState) {
-            int progress = movingState.getProgress();
-            int targetPosition = movingState.getTargetPosition();
+        recordModeTime(1);
+
+        switch (mode) {
+            case IDLE -> {
+                if (!ready) {
+                    targetAngle = -1;
+                    waitForRotation(1);
+                }
+            }
+            case MOVING -> {
+                if (position == targetPosition) {
+                    waitForRotation(1);
+                } else if (progress == movementTimePerTrackMs) {
+                    position += (position > targetPosition) ? -1 : 1;
+                    progress = 1;
+                } else {
+                    progress++;
+                }
+            }
+            case WAITING_FOR_ROTATION -> {
+                if (isRotationDone()) {
+                    mode = Mode.IDLE;
+                    ready = true;
+                } else {
+                    progress++;
+                }
+            }
+        }
+        time++;
+    }
+
+    // The operation happens on the next tick, so that is when the sector has to be under the head
+    private boolean isRotationDone() {
+        return (targetAngle < 0) ? progress == rotationalLatencyMs : getAngle(time + 1) == targetAngle;
+    }
+
+    public int getTicksUntilNextEvent() {
+        return switch (mode) {
+            case IDLE -> ready ? Integer.MAX_VALUE : rotationalLatencyMs + 1;
+            case MOVING -> (position != targetPosition)
+                    ? movementTimePerTrackMs - progress + 1
+                    : (targetAngle < 0) ? rotationalLatencyMs + 1 : 1;
+            case WAITING_FOR_ROTATION -> (targetAngle < 0)
+                    ? rotationalLatencyMs - progress + 1
+                    : Math.floorMod(targetAngle - getAngle(time) - 1, rotationPeriodMs) + 1;
+        };
+    }
+
+    public void skip(int ticks) {
+        recordModeTime(ticks);
 
-            if (state.getPosition() == targetPosition) {
-                state = new State.WaitingForRotationState(state.getPosition(), 1);
-                return;
+        switch (mode) {
+            case IDLE -> {
+                if (!ready) {
+                    targetAngle = -1;
+                    waitForRotation(ticks);
+                }
+            }
+            case MOVING -> {
+                if (position == targetPosition) {
+                    waitForRotation(ticks);
+                } else {
+                    progress += ticks;
+                }
             }
+            case WAITING_FOR_ROTATION -> progress += ticks;
+        }
+        time += ticks;
+    }
 
-            if (progress == movementTimePerTrackMs) {
-                if (state.getPosition() > targetPosition) {
-                    state = new State.MovingState(state.getPosition() - 1, targetPosition, 1);
+    // A tick that starts rotation counts as rotating, an arrival at the target track as seeking
+    private void recordModeTime(int ticks) {
+        switch (mode) {
+            case IDLE -> {
+                if (ready) {
+                    metrics.driveIdle(ticks);
                 } else {
-                    state = new State.MovingState(state.getPosition() + 1, targetPosition, 1);
+                    metrics.driveRotating(ticks);
                 }
-            } else {
-                state = new State.MovingState(state.getPosition(), targetPosition, progress + 1);
             }
-        } else if (state instanceof State.WaitingForRotationState waitingState) {
-            int progress = waitingState.getProgress();
-            if (progress == rotationalLatencyMs) {
-                state = new State.IdleState(state.getPosition(), true);
-            } else {
-                state = new State.WaitingForRotationState(state.getPosition(), progress + 1);
+            case MOVING -> {
+                if (position == targetPosition) {
+                    metrics.driveRotating(ticks);
+                } else {
+                    metrics.driveSeeking(ticks);
+                }
             }
+            case WAITING_FOR_ROTATION -> metrics.driveRotating(ticks);
         }
     }
 
+    private void waitForRotation(int progress) {
+        this.mode = Mode.WAITING_FOR_ROTATION;
+        this.progress = progress;
+        this.ready = false;
+    }
+
+    private enum Mode {
+        IDLE,
+        MOVING,
+        WAITING_FOR_ROTATION
+    }
+
     public static class State {
         private final int position;
 
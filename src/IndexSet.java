@@ -0,0 +1,125 @@
+// Set of indices in [0, capacity) as a hierarchy of 64-ary bitsets: a bit on one level is set when the
+// matching word of the level below is not empty, so adding, removing and finding the next member
+// touch one word per level, which is at most four levels for 2^24 indices
+public class IndexSet {
+    private final int capacity;
+    private final long[][] levels;
+    private int size = 0;
+
+    public IndexSet(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity should not be negative");
+        }
+        this.capacity = capacity;
+
+        int levelQuantity = 1;
+        for (int words = wordsFor(capacity); words > 1; words = wordsFor(words)) {
+            levelQuantity++;
+        }
+        this.levels = new long[levelQuantity][];
+        int bits = capacity;
+        for (int level = 0; level < levelQuantity; level++) {
+            levels[level] = new long[wordsFor(bits)];
+            bits = levels[level].length;
+        }
+    }
+
+    private static int wordsFor(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    public boolean add(int index) {
+        checkIndex(index);
+        if (contains(index)) {
+            return false;
+        }
+
+        for (long[] level : levels) {
+            int word = index >>> 6;
+            boolean wasEmpty = level[word] == 0L;
+            level[word] |= 1L << index;
+            if (!wasEmpty) {
+                break;
+            }
+            index = word;
+        }
+        size++;
+        return true;
+    }
+
+    public boolean remove(int index) {
+        checkIndex(index);
+        if (!contains(index)) {
+            return false;
+        }
+
+        for (long[] level : levels) {
+            int word = index >>> 6;
+            level[word] &= ~(1L << index);
+            if (level[word] != 0L) {
+                break;
+            }
+            index = word;
+        }
+        size--;
+        return true;
+    }
+
+    public boolean contains(int index) {
+        checkIndex(index);
+        return (levels[0][index >>> 6] & (1L << index)) != 0L;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Smallest member that is not less than `from`, or -1
+    public int nextSetBit(int from) {
+        if (from >= capacity) {
+            return -1;
+        }
+        int index = Math.max(from, 0);
+
+        // Climb until a word has a member at or after the position, then descend through the lowest set bits
+        int level = 0;
+        while (true) {
+            int word = index >>> 6;
+            if (word >= levels[level].length) {
+                return -1;
+            }
+            long bits = levels[level][word] & (-1L << index);
+            if (bits != 0L) {
+                index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                break;
+            }
+            if (level == levels.length - 1) {
+                return -1;
+            }
+            index = word + 1;
+            level++;
+        }
+
+        while (level > 0) {
+            level--;
+            index = (index << 6) + Long.numberOfTrailingZeros(levels[level][index]);
+        }
+        return index;
+    }
+
+    // First member after `index`, wrapping around to the start; `index` itself comes last
+    public int nextSetBitCyclic(int index) {
+        int next = nextSetBit(index + 1);
+        return (next >= 0) ? next : nextSetBit(0);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= capacity) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for capacity " + capacity);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+import java.util.Arrays;
+import java.util.Locale;
+
+// Log-bucketed histogram in the style of HdrHistogram: every power of two is split into 2^precisionBits
+// linear sub-buckets, so the recorded value is known to within 1 / 2^precisionBits of itself, and
+// memory depends on the largest value only, not on how many values were recorded
+public class LatencyHistogram {
+    public static final int DEFAULT_PRECISION_BITS = 7;
+    public static final double[] REPORTED_PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+
+    private final int precisionBits;
+    private final int subBucketCount;
+    private long[] counts;
+    private long totalCount = 0;
+    private long sum = 0;
+    private int min = Integer.MAX_VALUE;
+    private int max = 0;
+
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION_BITS);
+    }
+
+    public LatencyHistogram(int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("precisionBits should be between 1 and 16");
+        }
+        this.precisionBits = precisionBits;
+        this.subBucketCount = 1 << precisionBits;
+        this.counts = new long[2 * subBucketCount];
+    }
+
+    private LatencyHistogram(LatencyHistogram other) {
+        this.precisionBits = other.precisionBits;
+        this.subBucketCount = other.subBucketCount;
+        this.counts = other.counts.clone();
+        this.totalCount = other.totalCount;
+        this.sum = other.sum;
+        this.min = other.min;
+        this.max = other.max;
+    }
+
+    public void record(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value should not be negative");
+        }
+
+        int index = bucketIndex(value);
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + subBucketCount));
+        }
+        counts[index]++;
+
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    // Values below 2^precisionBits map one to one; above that, the shift drops the bits past the precision
+    private int bucketIndex(int value) {
+        if (value < subBucketCount) {
+            return value;
+        }
+        int shift = (31 - Integer.numberOfLeadingZeros(value)) - precisionBits;
+        return subBucketCount * shift + (value >>> shift);
+    }
+
+    private long bucketHighestValue(int index) {
+        if (index < 2 * subBucketCount) {
+            return index;
+        }
+        int shift = index / subBucketCount - 1;
+        long subBucket = index - (long) subBucketCount * shift;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile should be between 0 and 100");
+        }
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long targetCount = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seenCount = 0;
+        for (int index = 0; index < counts.length; index++) {
+            seenCount += counts[index];
+            if (seenCount >= targetCount) {
+                return Math.min(bucketHighestValue(index), max);
+            }
+        }
+        return max;
+    }
+
+    public void add(LatencyHistogram other) {
+        if (other.precisionBits != precisionBits) {
+            throw new IllegalArgumentException("Cannot merge histograms with precision " + precisionBits + " and " + other.precisionBits);
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int index = 0; index < other.counts.length; index++) {
+            counts[index] += other.counts[index];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public LatencyHistogram snapshot() {
+        return new LatencyHistogram(this);
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public int getMin() {
+        return (totalCount == 0) ? 0 : min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return (totalCount == 0) ? 0 : (double) sum / totalCount;
+    }
+
+    public String getSummary() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("count=").append(totalCount);
+        stringBuilder.append(String.format(Locale.ROOT, " mean=%.2f", getMean()));
+        for (double percentile : REPORTED_PERCENTILES) {
+            stringBuilder.append(" p").append(formatPercentile(percentile)).append('=').append(valueAtPercentile(percentile));
+        }
+        stringBuilder.append(" max=").append(max);
+        return stringBuilder.toString();
+    }
+
+    public static String formatPercentile(double percentile) {
+        return (percentile == Math.rint(percentile)) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+}
@@ -1,48 +1,378 @@
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 public class Logger {
-    private static final Map<Entity, FileWriter> fileWriters = new HashMap<>();
+    public static final int DEFAULT_RING_BUFFER_CAPACITY = 1 << 16;
+    private static final int TEXT_CHUNK_CHARS = 1 << 16;
 
-    public static void init(String directory, String prefix) {
+    private final Map<Entity, FileWriter> fileWriters = new HashMap<>();
+    private final Map<Entity, BinaryTrace.Writer> binaryWriters = new EnumMap<>(Entity.class);
+    private AsyncWriter asyncWriter = null;
 
+    public Logger(String directory, String prefix) {
+        this(directory, prefix, Mode.DIRECT);
+    }
+
+    public Logger(String directory, String prefix, Mode mode) {
+        this(directory, prefix, mode, Format.TEXT, "");
+    }
+
+    public Logger(String directory, String prefix, Mode mode, Format format, String configuration) {
+        this(directory, prefix, mode, format, configuration, OverflowPolicy.BACK_PRESSURE);
+    }
+
+    // Every file is opened up front, and a run that can not log does not start
+    public Logger(String directory, String prefix, Mode mode, Format format, String configuration, OverflowPolicy overflowPolicy) {
         for (Entity entity : Entity.values()) {
             try {
-                fileWriters.put(entity, new FileWriter(directory + "/" + prefix + "_" + entity.name() + ".txt"));
+                if (format == Format.BINARY && entity.kind != Entity.Kind.TEXT) {
+                    Path path = Path.of(directory, prefix + "_" + entity.name() + ".bin");
+                    binaryWriters.put(entity, new BinaryTrace.Writer(path, entity.getColumns(), configuration));
+                } else {
+                    fileWriters.put(entity, new FileWriter(directory + "/" + prefix + "_" + entity.name() + ".txt"));
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                close();
+                throw new UncheckedIOException("Can not open the " + entity + " log in " + directory, e);
             }
         }
+
+        if (mode == Mode.ASYNC) {
+            asyncWriter = new AsyncWriter(DEFAULT_RING_BUFFER_CAPACITY, overflowPolicy);
+            asyncWriter.start();
+        }
     }
 
-    public static void write(Entity entity, String text) {
+    public void write(Entity entity, String text) {
+        if (asyncWriter != null) {
+            asyncWriter.offer(entity, text);
+            return;
+        }
+
         try {
             fileWriters.get(entity).write(text);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("Can not write the " + entity + " log", e);
         }
     }
 
-    public static void close() {
-        for (FileWriter writer : fileWriters.values()) {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    // Passes a long text record on in chunks, so that it is never built as one string
+    public Writer openTextWriter(Entity entity) {
+        return new Writer() {
+            private final StringBuilder chunk = new StringBuilder();
+
+            @Override
+            public void write(String text, int offset, int length) {
+                chunk.append(text, offset, offset + length);
+                if (chunk.length() >= TEXT_CHUNK_CHARS) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                chunk.append(buffer, offset, length);
+                if (chunk.length() >= TEXT_CHUNK_CHARS) {
+                    flush();
+                }
+            }
+
+            @Override
+            public void flush() {
+                if (!chunk.isEmpty()) {
+                    Logger.this.write(entity, chunk.toString());
+                    chunk.setLength(0);
+                }
+            }
+
+            @Override
+            public void close() {
+                flush();
+            }
+        };
+    }
+
+    public void writeValue(Entity entity, int value) {
+        BinaryTrace.Writer binaryWriter = binaryWriters.get(entity);
+        if (binaryWriter == null) {
+            write(entity, value + "\n");
+            return;
+        }
+
+        try {
+            binaryWriter.writeValue(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write the " + entity + " log", e);
+        }
+    }
+
+    public void writeRepeatedValue(Entity entity, int value, int count) {
+        BinaryTrace.Writer binaryWriter = binaryWriters.get(entity);
+        if (binaryWriter == null) {
+            write(entity, (value + "\n").repeat(count));
+            return;
+        }
+
+        try {
+            binaryWriter.writeRepeatedValue(value, count);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write the " + entity + " log", e);
+        }
+    }
+
+    public void writePair(Entity entity, int first, int second) {
+        BinaryTrace.Writer binaryWriter = binaryWriters.get(entity);
+        if (binaryWriter == null) {
+            write(entity, first + "\t" + second + "\n");
+            return;
+        }
+
+        try {
+            binaryWriter.writePair(first, second);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write the " + entity + " log", e);
+        }
+    }
+
+    public void writeRow(Entity entity, int[] values) {
+        BinaryTrace.Writer binaryWriter = binaryWriters.get(entity);
+        if (binaryWriter == null) {
+            StringBuilder stringBuilder = new StringBuilder();
+            for (int value : values) {
+                stringBuilder.append(value).append(", ");
+            }
+            write(entity, stringBuilder.append("\n").toString());
+            return;
+        }
+
+        try {
+            binaryWriter.writeRow(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write the " + entity + " log", e);
+        }
+    }
+
+    // The files are closed even when the writer thread failed, whose failure is rethrown afterwards
+    public void close() {
+        try {
+            if (asyncWriter != null) {
+                asyncWriter.close();
+            }
+        } finally {
+            for (FileWriter writer : fileWriters.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            for (BinaryTrace.Writer writer : binaryWriters.values()) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         }
     }
 
+    public long getDroppedRecords() {
+        return (asyncWriter == null) ? 0 : asyncWriter.droppedRecords.get();
+    }
+
+    public long getBackPressuredRecords() {
+        return (asyncWriter == null) ? 0 : asyncWriter.backPressuredRecords.get();
+    }
+
     enum Entity {
-        HARD_DRIVE_STATE,
-        DRIVE_POSITION,
-        REQUEST_EXECUTION_TIME,
-        MAX_RPS,
-        SUMMARY,
-        PRETTY_HARD_DRIVE_STATE,
-        REQUEST_TRACK_NUMBER,
-        CREATED_REQUESTS_COUNTER
+        HARD_DRIVE_STATE(Kind.TEXT),
+        DRIVE_POSITION(Kind.VALUE),
+        DRIVE_POSITION_CHANGES(Kind.PAIR),
+        REQUEST_EXECUTION_TIME(Kind.VALUE),
+        MAX_RPS(Kind.VALUE),
+        SUMMARY(Kind.TEXT),
+        PRETTY_HARD_DRIVE_STATE(Kind.TEXT),
+        REQUEST_TRACK_NUMBER(Kind.PAIR),
+        CREATED_REQUESTS_COUNTER(Kind.ROW),
+        METRICS(Kind.TEXT),
+        POLICY_SWITCHES(Kind.TEXT);
+
+        private final Kind kind;
+
+        Entity(Kind kind) {
+            this.kind = kind;
+        }
+
+        public int getColumns() {
+            return switch (kind) {
+                case TEXT -> 0;
+                case VALUE -> 1;
+                case PAIR -> 2;
+                case ROW -> Main.PROCESS_QUANTITY;
+            };
+        }
+
+        enum Kind {
+            TEXT,
+            VALUE,
+            PAIR,
+            ROW
+        }
+    }
+
+    public enum Mode {
+        DIRECT,
+        ASYNC
+    }
+
+    public enum Format {
+        TEXT,
+        BINARY
+    }
+
+    public enum OverflowPolicy {
+        BACK_PRESSURE,
+        DROP
+    }
+
+    // Single-producer single-consumer ring buffer drained by a dedicated writer thread
+    private class AsyncWriter {
+        private static final int FLUSH_THRESHOLD_CHARS = 1 << 16;
+        private static final long IDLE_PARK_NANOS = 100_000L;
+
+        private final Entity[] entities;
+        private final String[] texts;
+        private final int mask;
+        private final OverflowPolicy overflowPolicy;
+
+        private final AtomicLong writeSequence = new AtomicLong();
+        private final AtomicLong readSequence = new AtomicLong();
+        private final AtomicLong droppedRecords = new AtomicLong();
+        private final AtomicLong backPressuredRecords = new AtomicLong();
+
+        private final Map<Entity, StringBuilder> pendingTexts = new EnumMap<>(Entity.class);
+        private final Thread thread;
+        private volatile boolean running = true;
+        // Why the writer thread stopped early, rethrown to the producer
+        private volatile Throwable failure = null;
+
+        AsyncWriter(int capacity, OverflowPolicy overflowPolicy) {
+            if (Integer.bitCount(capacity) != 1) {
+                throw new IllegalArgumentException("capacity should be a power of two");
+            }
+            this.entities = new Entity[capacity];
+            this.texts = new String[capacity];
+            this.mask = capacity - 1;
+            this.overflowPolicy = overflowPolicy;
+
+            for (Entity entity : Entity.values()) {
+                pendingTexts.put(entity, new StringBuilder());
+            }
+
+            this.thread = new Thread(() -> {
+                try {
+                    run();
+                } catch (RuntimeException | Error e) {
+                    failure = e;
+                }
+            }, "logger-writer");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void offer(Entity entity, String text) {
+            long sequence = writeSequence.get();
+            if (sequence - readSequence.get() == texts.length) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    droppedRecords.incrementAndGet();
+                    return;
+                }
+
+                backPressuredRecords.incrementAndGet();
+                LockSupport.unpark(thread);
+                while (sequence - readSequence.get() == texts.length) {
+                    if (!thread.isAlive()) {
+                        throw new IllegalStateException("Logger writer thread stopped", failure);
+                    }
+                    Thread.onSpinWait();
+                }
+            }
+
+            int index = (int) sequence & mask;
+            entities[index] = entity;
+            texts[index] = text;
+            writeSequence.lazySet(sequence + 1);
+        }
+
+        void close() {
+            running = false;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Logger writer thread stopped", failure);
+            }
+        }
+
+        private void run() {
+            while (true) {
+                boolean stopping = !running;
+                long available = writeSequence.get();
+                long sequence = readSequence.get();
+
+                if (sequence == available) {
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                for (; sequence < available; sequence++) {
+                    int index = (int) sequence & mask;
+                    Entity entity = entities[index];
+                    StringBuilder pendingText = pendingTexts.get(entity);
+                    pendingText.append(texts[index]);
+                    entities[index] = null;
+                    texts[index] = null;
+
+                    if (pendingText.length() >= FLUSH_THRESHOLD_CHARS) {
+                        flush(entity, pendingText);
+                    }
+                }
+                readSequence.lazySet(sequence);
+            }
+
+            for (Map.Entry<Entity, StringBuilder> entry : pendingTexts.entrySet()) {
+                flush(entry.getKey(), entry.getValue());
+            }
+        }
+
+        private void flush(Entity entity, StringBuilder pendingText) {
+            if (pendingText.length() == 0) {
+                return;
+            }
+            try {
+                fileWriters.get(entity).append(pendingText);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Can not write the " + entity + " log", e);
+            }
+            pendingText.setLength(0);
+        }
     }
 }
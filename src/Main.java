@@ -1,167 +1,166 @@
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 import java.util.Scanner;
 
 public class Main {
 
-    public static Random Random = new Random(1303);
+    public static long SEED = 1303;
     public static int PROCESS_QUANTITY = 10;
     public static double NEIGHBORING_SECTOR_WRITE_PROBABILITY = 0.3;
     public static int TRACK_QUANTITY = 500;
     public static int SECTORS_PER_TRACK = 100;
     public static int QUEUE_SIZE = 20;
     public static int SIMULATION_REQUESTS = 100_000;
-    public static int time = 0;
+    public static SimulationEngine ENGINE = SimulationEngine.EVENT;
+    public static Logger.Mode LOGGER_MODE = Logger.Mode.ASYNC;
+    // What an ASYNC logger does when its ring buffer is full: wait for the writer thread or drop the record
+    public static Logger.OverflowPolicy LOGGER_OVERFLOW_POLICY = Logger.OverflowPolicy.BACK_PRESSURE;
+    public static Logger.Format OUTPUT_FORMAT = Logger.Format.TEXT;
+    public static DrivePositionEncoding DRIVE_POSITION_ENCODING = DrivePositionEncoding.CHANGE_POINTS;
+    public static int METRICS_SNAPSHOT_INTERVAL_MS = 1000;
+    // Registers every run's metrics as an MBean in the platform server
+    public static boolean METRICS_JMX = false;
+    public static DriveArray.Level RAID_LEVEL = DriveArray.Level.RAID_0;
+    public static int DRIVE_QUANTITY = 1;
+    public static int STRIPE_SECTORS = 100;
+    public static int DRIVE_ARRAY_THREADS = 1;
+    public static int CPU_CORES = 1;
+    // Tracks held in each drive's buffer, 0 turns the buffer off
+    public static int TRACK_CACHE_TRACKS = 0;
+    public static int TRACK_READ_AHEAD_TRACKS = 0;
+    // Dirty sectors buffered by each drive, 0 sends every write straight to the scheduler queue
+    public static int WRITE_BACK_CACHE_SECTORS = 0;
+    public static double WRITE_BACK_HIGH_WATERMARK = 0.75;
+    public static double WRITE_BACK_LOW_WATERMARK = 0.25;
+    // Requests to a track that already has one of the same type queued ride along with it
+    public static boolean MERGE_ADJACENT_REQUESTS = false;
+    // Operations wait for their sector, or the last sector of a merged group or flushed extent, to come under the head
+    // instead of a flat average rotational latency
+    public static boolean ROTATIONAL_POSITION_MODEL = false;
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("sweep")) {
+            Sweep.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("replay")) {
+            TraceReplay.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         System.out.println("Choose your algorithm:");
         System.out.println("1. FCFS");
         System.out.println("2. SSTF");
         System.out.println("3. F_LOOK");
+        System.out.println("4. SSTF (track-indexed)");
+        System.out.println("5. F_LOOK (sorted batches)");
+        System.out.println("6. SPTF");
+        System.out.println("7. Deadline");
+        System.out.println("8. Adaptive (FCFS, SSTF or LOOK by load)");
 
         Scanner scanner = new Scanner(System.in);
         int choice = scanner.nextInt();
-        QuerySelectionAlgorithm policy = createPolicy(choice);
-        System.out.println("Chosen algorithm - " + policy.getClass().getSimpleName());
+        List<QuerySelectionAlgorithm> policies = createPolicies(choice, QUEUE_SIZE, DRIVE_QUANTITY);
+        System.out.println("Chosen algorithm - " + policies.get(0).getClass().getSimpleName());
 
         System.out.println("Now choose maximum QPS:");
         int maxRPS = scanner.nextInt();
 
 
-        execute(policy, maxRPS);
+        execute(policies, maxRPS);
     }
 
     public static QuerySelectionAlgorithm createPolicy(int choice) {
+        return createPolicy(choice, QUEUE_SIZE);
+    }
+
+    public static QuerySelectionAlgorithm createPolicy(int choice, int queueSize) {
         return switch (choice) {
-            case 1 -> new FCFS(QUEUE_SIZE);
-            case 2 -> new SSTF(QUEUE_SIZE);
-            case 3 -> new F_LOOK(QUEUE_SIZE);
+            case 1 -> new FCFS(queueSize);
+            case 2 -> new SSTF(queueSize);
+            case 3 -> new F_LOOK(queueSize);
+            case 4 -> new TrackIndexedSSTF(queueSize);
+            case 5 -> new SortedF_LOOK(queueSize);
+            case 6 -> new SPTF(queueSize);
+            case 7 -> new Deadline(queueSize);
+            case 8 -> new Adaptive(queueSize);
             default -> throw new IllegalArgumentException("Invalid input!");
         };
     }
 
-    public static void execute(QuerySelectionAlgorithm policy, int maxRPS) {
-        String loggerDirectory = "C:\\Users\\Anastasia\\Desktop\\Labs\\PP\\kursova_java\\src\\output";
-        String loggerPrefix = policy.getClass().getSimpleName() + "_" + maxRPS + "maxRPS";
-        Logger.init(loggerDirectory, loggerPrefix);
-
-        final int[] completedRequestsCounter = {0};
-
-        int[] requestCompletionTimes = new int[SIMULATION_REQUESTS];
-
-        int currentFileBlock = 0;
-
-        boolean[][] hardDriveTracks = new boolean[TRACK_QUANTITY][SECTORS_PER_TRACK];
-        HardDrive hardDrive = new HardDrive(hardDriveTracks);
-        Controller controller = new Controller(hardDrive, policy, (request, requestCompletionTime) -> {
-            completedRequestsCounter[0]++;
-            requestCompletionTimes[completedRequestsCounter[0] - 1] = requestCompletionTime;
-
-            Logger.write(Logger.Entity.REQUEST_TRACK_NUMBER, time + "\t" + request.getTrackNumber() + "\n");
-        });
-
-        List<Process> processes = new ArrayList<>(PROCESS_QUANTITY);
-
-        Processor processor = new Processor(processes, Processor.DEFAULT_TIME_QUANTUM_MS, maxRPS);
-
-        for (int i = 0; i < PROCESS_QUANTITY; i++) {
-            File.Type fileType = File.Type.values()[Random.nextInt(Query.Type.values().length + 1)];
-            int fileSize = switch (fileType) {
-                case SMALL -> Random.nextInt(1, 11);
-                case MEDIUM -> Random.nextInt(11, 151);
-                case LARGE -> Random.nextInt(151, 501);
-            };
-
-
-            int[] fileBlocks = new int[fileSize];
-            for (int j = 0; j < fileSize; j++) {
-                boolean successfulWriteToNeighboringBlock = Random.nextDouble() < NEIGHBORING_SECTOR_WRITE_PROBABILITY;
-
-                int fileBlock;
-                if (successfulWriteToNeighboringBlock) {
-                    fileBlock = currentFileBlock;
-                } else {
-                    fileBlock = currentFileBlock + 1;
-                }
-
-                if (successfulWriteToNeighboringBlock) {
-                    currentFileBlock++;
-                } else {
-                    currentFileBlock += 2;
-                }
-
-                hardDriveTracks[fileBlock / SECTORS_PER_TRACK][fileBlock % SECTORS_PER_TRACK] = true;
-                fileBlocks[j] = fileBlock;
-            }
-
-            boolean fileIsReadOnly = Random.nextBoolean();
-            processes.add(new Process(processor, new File(fileType, fileSize, fileBlocks), fileIsReadOnly, controller));
+    // One independent policy instance per member drive
+    public static List<QuerySelectionAlgorithm> createPolicies(int choice, int queueSize, int drives) {
+        List<QuerySelectionAlgorithm> policies = new ArrayList<>(drives);
+        for (int i = 0; i < drives; i++) {
+            policies.add(createPolicy(choice, queueSize));
         }
+        return policies;
+    }
 
-        Logger.write(Logger.Entity.HARD_DRIVE_STATE, hardDrive.toString());
-        Logger.write(Logger.Entity.PRETTY_HARD_DRIVE_STATE, getPrettyHardDriveState(hardDriveTracks));
-
-        for (int i = 0; i < processes.size(); i++) {
-            Logger.write(Logger.Entity.SUMMARY, "Process №" + i + "\n");
-            Logger.write(Logger.Entity.SUMMARY, processes.get(i).toString() + "\n\n");
-        }
+    public static void execute(List<QuerySelectionAlgorithm> policies, int maxRPS) {
+        String loggerDirectory = "C:\\Users\\Anastasia\\Desktop\\Labs\\PP\\kursova_java\\src\\output";
+        String loggerPrefix = policies.get(0).getClass().getSimpleName() + "_" + maxRPS + "maxRPS";
 
-        while (completedRequestsCounter[0] < SIMULATION_REQUESTS) {
-            processor.tick();
-            controller.tick();
-            hardDrive.tick();
+        Simulation.Result result = new Simulation(policies, RAID_LEVEL, CPU_CORES, maxRPS, QUEUE_SIZE, SEED, loggerDirectory, loggerPrefix).run();
 
-            time++;
+        System.out.println("Total completed requests: " + result.completedRequests());
+        System.out.println("Simulation time: " + result.simulationTimeMs() + " ms");
+        System.out.println("Average RPS: " + result.averageRPS());
+        System.out.println("Request latency, ms: " + result.latency().getSummary());
+        System.out.println("Response time, ms: " + result.responseTime().getSummary());
 
-            Logger.write(Logger.Entity.DRIVE_POSITION, hardDrive.getState().getPosition() + "\n");
+        if (LOGGER_MODE == Logger.Mode.ASYNC) {
+            System.out.println("Logger back-pressured records: " + result.backPressuredLogRecords());
+            System.out.println("Logger dropped records: " + result.droppedLogRecords());
         }
-
-        for (int requestCompletionTime : requestCompletionTimes) {
-            Logger.write(Logger.Entity.REQUEST_EXECUTION_TIME, requestCompletionTime + "\n");
-        }
-
-        System.out.println("Total completed requests: " + completedRequestsCounter[0]);
-        System.out.println("Simulation time: " + processor.getTime() + " ms");
-        System.out.println("Average RPS: " + (float) completedRequestsCounter[0] / (processor.getTime() / 1000.0));
-
-        Logger.write(Logger.Entity.SUMMARY, "\n\n\n");
-
-        Logger.write(Logger.Entity.SUMMARY, "Total completed requests: " + completedRequestsCounter[0] + "\n");
-        Logger.write(Logger.Entity.SUMMARY, "Simulation time: " + processor.getTime() + " ms\n");
-        Logger.write(Logger.Entity.SUMMARY, "Average RPS: " + (float) completedRequestsCounter[0] / (processor.getTime() / 1000.0) + "\n");
-
-        Logger.close();
     }
 
-    public static String getPrettyHardDriveState(boolean[][] hardDriveTracks) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (int trackNumber = 0; trackNumber < TRACK_QUANTITY; trackNumber++) {
-            stringBuilder.append(trackNumber).append("\t");
+    public static void writePrettyHardDriveState(SectorBitmap allocatedSectors, Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (long trackNumber = 0; trackNumber < TRACK_QUANTITY; trackNumber++) {
+            line.setLength(0);
+            line.append(trackNumber).append("\t");
+            long firstSector = trackNumber * SECTORS_PER_TRACK;
             for (int sectorNumber = 0; sectorNumber < SECTORS_PER_TRACK; sectorNumber++) {
-                if (hardDriveTracks[trackNumber][sectorNumber]) {
-                    stringBuilder.append("■");
+                if (allocatedSectors.get(firstSector + sectorNumber)) {
+                    line.append("■");
                 } else {
-                    stringBuilder.append("□");
+                    line.append("□");
                 }
             }
-            stringBuilder.append("\n");
+            // Allocated sectors of the track
+            line.append("\t").append(allocatedSectors.rank(firstSector + SECTORS_PER_TRACK) - allocatedSectors.rank(firstSector));
+            line.append("\n");
+            writer.append(line);
         }
-        return stringBuilder.toString();
     }
 
-    public static int getExponentiallyDistributedInt(int max) {
+    public static int getExponentiallyDistributedInt(SplittableRandom random, int max) {
         if (!(max > 1)) {
             throw new IllegalArgumentException("max should be greater than 1");
         }
 
-        double rawResult = (max - ((Math.log(1 - Random.nextDouble()) / (-3.0)) * max));
+        double rawResult = (max - ((Math.log(1 - random.nextDouble()) / (-3.0)) * max));
         int result = (int) rawResult;
 
         if (result < 1) {
-            return getExponentiallyDistributedInt(max);
+            return getExponentiallyDistributedInt(random, max);
         } else {
             return result;
         }
     }
+
+    public enum DrivePositionEncoding {
+        PER_MILLISECOND,
+        CHANGE_POINTS
+    }
+
+    public enum SimulationEngine {
+        TICK,
+        EVENT
+    }
 }
\ No newline at end of file
@@ -0,0 +1,376 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Counters are plain fields owned by the simulation thread. Other threads (JMX) only see
+// the immutable snapshot published by publish(), so the hot path has no synchronization
+public class Metrics implements MetricsMXBean {
+    public static final String SNAPSHOT_HEADER = "time\tqueueDepth\tmaxQueueDepth\tqueuedRequests\tqueueFullRejections" +
+            "\tdispatchedRequests\tmergedRequests\tmeanSeekDistance\tseekDistanceP99\tmaxSeekDistance\tseekTimeMs\trotateTimeMs\tidleTimeMs" +
+            "\tcontextSwitches\ttrackCacheHits\ttrackCacheMisses\ttrackCacheEvictions\tdirtySectors\tbufferedWrites\tcoalescedWrites" +
+            "\twriteBackReadHits\tflushes\tflushedSectors\tflushLatencyP99Ms\tblockedTimeByProcessMs";
+
+    private static final AtomicInteger registeredCounter = new AtomicInteger();
+
+    private final List<Process> processes;
+
+    private long queueDepth = 0;
+    private long maxQueueDepth = 0;
+    private long queuedRequests = 0;
+    private long queueFullRejections = 0;
+    private long dispatchedRequests = 0;
+    private long mergedRequests = 0;
+    private final LatencyHistogram seekDistance = new LatencyHistogram();
+    private long seekTime = 0;
+    private long rotateTime = 0;
+    private long idleTime = 0;
+    private long contextSwitches = 0;
+    private long trackCacheHits = 0;
+    private long trackCacheMisses = 0;
+    private long trackCacheEvictions = 0;
+    private long dirtySectors = 0;
+    private long bufferedWrites = 0;
+    private long coalescedWrites = 0;
+    private long writeBackReadHits = 0;
+    private long flushes = 0;
+    private long flushedSectors = 0;
+    private final LatencyHistogram flushLatency = new LatencyHistogram();
+
+    private final List<Metrics> members = new ArrayList<>();
+
+    private volatile Snapshot published;
+    private ObjectName objectName = null;
+
+    public Metrics(List<Process> processes) {
+        this.processes = processes;
+        this.published = snapshot(0);
+    }
+
+    public void requestQueued() {
+        queuedRequests++;
+        queueDepth++;
+        maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+    }
+
+    public void requestRejected() {
+        queueFullRejections++;
+    }
+
+    public void requestDispatched(int seekDistanceTracks) {
+        dispatchedRequests++;
+        queueDepth--;
+        seekDistance.record(seekDistanceTracks);
+    }
+
+    // Rides along with a queued request to the same track instead of taking a queue slot of its own
+    public void requestMerged() {
+        mergedRequests++;
+    }
+
+    public void driveSeeking(int ticks) {
+        seekTime += ticks;
+    }
+
+    public void driveRotating(int ticks) {
+        rotateTime += ticks;
+    }
+
+    public void driveIdle(int ticks) {
+        idleTime += ticks;
+    }
+
+    public void contextSwitched() {
+        contextSwitches++;
+    }
+
+    public void trackCacheHit() {
+        trackCacheHits++;
+    }
+
+    public void trackCacheMiss() {
+        trackCacheMisses++;
+    }
+
+    public void trackCacheEviction() {
+        trackCacheEvictions++;
+    }
+
+    public void writeBuffered() {
+        bufferedWrites++;
+    }
+
+    public void writeCoalesced() {
+        coalescedWrites++;
+    }
+
+    public void dirtySectorsChanged(int change) {
+        dirtySectors += change;
+    }
+
+    public void writeBackReadHit() {
+        writeBackReadHits++;
+    }
+
+    public void extentFlushed(int sectors, int latency) {
+        flushes++;
+        flushedSectors += sectors;
+        flushLatency.record(latency);
+    }
+
+    public LatencyHistogram getFlushLatency() {
+        LatencyHistogram total = flushLatency.snapshot();
+        for (Metrics member : members) {
+            total.add(member.flushLatency);
+        }
+        return total;
+    }
+
+    // Member registries (one per drive of an array) are folded into this one's snapshots
+    public void addMember(Metrics member) {
+        members.add(member);
+    }
+
+    // Queue depth and drive times are summed over the members, maxQueueDepth is the deepest single queue
+    public Snapshot snapshot(long time) {
+        long[] blockedTimeByProcess = new long[processes.size()];
+        for (int i = 0; i < blockedTimeByProcess.length; i++) {
+            blockedTimeByProcess[i] = processes.get(i).getBlockedTime();
+        }
+
+        long totalQueueDepth = queueDepth;
+        long totalMaxQueueDepth = maxQueueDepth;
+        long totalQueuedRequests = queuedRequests;
+        long totalQueueFullRejections = queueFullRejections;
+        long totalDispatchedRequests = dispatchedRequests;
+        long totalMergedRequests = mergedRequests;
+        LatencyHistogram totalSeekDistance = seekDistance.snapshot();
+        long totalSeekTime = seekTime;
+        long totalRotateTime = rotateTime;
+        long totalIdleTime = idleTime;
+        long totalContextSwitches = contextSwitches;
+        long totalTrackCacheHits = trackCacheHits;
+        long totalTrackCacheMisses = trackCacheMisses;
+        long totalTrackCacheEvictions = trackCacheEvictions;
+        long totalDirtySectors = dirtySectors;
+        long totalBufferedWrites = bufferedWrites;
+        long totalCoalescedWrites = coalescedWrites;
+        long totalWriteBackReadHits = writeBackReadHits;
+        long totalFlushes = flushes;
+        long totalFlushedSectors = flushedSectors;
+        for (Metrics member : members) {
+            totalQueueDepth += member.queueDepth;
+            totalMaxQueueDepth = Math.max(totalMaxQueueDepth, member.maxQueueDepth);
+            totalQueuedRequests += member.queuedRequests;
+            totalQueueFullRejections += member.queueFullRejections;
+            totalDispatchedRequests += member.dispatchedRequests;
+            totalMergedRequests += member.mergedRequests;
+            totalSeekDistance.add(member.seekDistance);
+            totalSeekTime += member.seekTime;
+            totalRotateTime += member.rotateTime;
+            totalIdleTime += member.idleTime;
+            totalContextSwitches += member.contextSwitches;
+            totalTrackCacheHits += member.trackCacheHits;
+            totalTrackCacheMisses += member.trackCacheMisses;
+            totalTrackCacheEvictions += member.trackCacheEvictions;
+            totalDirtySectors += member.dirtySectors;
+            totalBufferedWrites += member.bufferedWrites;
+            totalCoalescedWrites += member.coalescedWrites;
+            totalWriteBackReadHits += member.writeBackReadHits;
+            totalFlushes += member.flushes;
+            totalFlushedSectors += member.flushedSectors;
+        }
+
+        return new Snapshot(time, totalQueueDepth, totalMaxQueueDepth, totalQueuedRequests, totalQueueFullRejections,
+                totalDispatchedRequests, totalMergedRequests, totalSeekDistance.getMean(), totalSeekDistance.valueAtPercentile(99.0),
+                totalSeekDistance.getMax(), totalSeekTime, totalRotateTime, totalIdleTime, totalContextSwitches,
+                totalTrackCacheHits, totalTrackCacheMisses, totalTrackCacheEvictions, totalDirtySectors, totalBufferedWrites,
+                totalCoalescedWrites, totalWriteBackReadHits, totalFlushes, totalFlushedSectors,
+                getFlushLatency().valueAtPercentile(99.0), blockedTimeByProcess);
+    }
+
+    public Snapshot publish(long time) {
+        Snapshot snapshot = snapshot(time);
+        published = snapshot;
+        return snapshot;
+    }
+
+    public void register(String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("kursova:type=Simulation,name=" + ObjectName.quote(name) + ",id=" + registeredCounter.incrementAndGet());
+            server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            objectName = null;
+            e.printStackTrace();
+        }
+    }
+
+    public void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        objectName = null;
+    }
+
+    @Override
+    public long getTime() {
+        return published.time();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return published.queueDepth();
+    }
+
+    @Override
+    public long getMaxQueueDepth() {
+        return published.maxQueueDepth();
+    }
+
+    @Override
+    public long getQueuedRequests() {
+        return published.queuedRequests();
+    }
+
+    @Override
+    public long getQueueFullRejections() {
+        return published.queueFullRejections();
+    }
+
+    @Override
+    public long getDispatchedRequests() {
+        return published.dispatchedRequests();
+    }
+
+    @Override
+    public long getMergedRequests() {
+        return published.mergedRequests();
+    }
+
+    @Override
+    public double getMeanSeekDistance() {
+        return published.meanSeekDistance();
+    }
+
+    @Override
+    public long getSeekDistanceP99() {
+        return published.seekDistanceP99();
+    }
+
+    @Override
+    public long getMaxSeekDistance() {
+        return published.maxSeekDistance();
+    }
+
+    @Override
+    public long getSeekTimeMs() {
+        return published.seekTimeMs();
+    }
+
+    @Override
+    public long getRotateTimeMs() {
+        return published.rotateTimeMs();
+    }
+
+    @Override
+    public long getIdleTimeMs() {
+        return published.idleTimeMs();
+    }
+
+    @Override
+    public long getContextSwitches() {
+        return published.contextSwitches();
+    }
+
+    @Override
+    public long getTrackCacheHits() {
+        return published.trackCacheHits();
+    }
+
+    @Override
+    public long getTrackCacheMisses() {
+        return published.trackCacheMisses();
+    }
+
+    @Override
+    public long getTrackCacheEvictions() {
+        return published.trackCacheEvictions();
+    }
+
+    @Override
+    public long getDirtySectors() {
+        return published.dirtySectors();
+    }
+
+    @Override
+    public long getBufferedWrites() {
+        return published.bufferedWrites();
+    }
+
+    @Override
+    public long getCoalescedWrites() {
+        return published.coalescedWrites();
+    }
+
+    @Override
+    public long getWriteBackReadHits() {
+        return published.writeBackReadHits();
+    }
+
+    @Override
+    public long getFlushes() {
+        return published.flushes();
+    }
+
+    @Override
+    public long getFlushedSectors() {
+        return published.flushedSectors();
+    }
+
+    @Override
+    public long getFlushLatencyP99Ms() {
+        return published.flushLatencyP99Ms();
+    }
+
+    @Override
+    public long[] getBlockedTimeByProcessMs() {
+        return published.blockedTimeByProcessMs().clone();
+    }
+
+    public record Snapshot(long time, long queueDepth, long maxQueueDepth, long queuedRequests, long queueFullRejections,
+                           long dispatchedRequests, long mergedRequests, double meanSeekDistance, long seekDistanceP99, long maxSeekDistance,
+                           long seekTimeMs, long rotateTimeMs, long idleTimeMs, long contextSwitches,
+                           long trackCacheHits, long trackCacheMisses, long trackCacheEvictions, long dirtySectors,
+                           long bufferedWrites, long coalescedWrites, long writeBackReadHits, long flushes, long flushedSectors,
+                           long flushLatencyP99Ms, long[] blockedTimeByProcessMs) {
+
+        public String format() {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append(time).append('\t').append(queueDepth).append('\t').append(maxQueueDepth)
+                    .append('\t').append(queuedRequests).append('\t').append(queueFullRejections)
+                    .append('\t').append(dispatchedRequests).append('\t').append(mergedRequests)
+                    .append('\t').append(String.format(Locale.ROOT, "%.2f", meanSeekDistance))
+                    .append('\t').append(seekDistanceP99).append('\t').append(maxSeekDistance)
+                    .append('\t').append(seekTimeMs).append('\t').append(rotateTimeMs).append('\t').append(idleTimeMs)
+                    .append('\t').append(contextSwitches).append('\t').append(trackCacheHits)
+                    .append('\t').append(trackCacheMisses).append('\t').append(trackCacheEvictions)
+                    .append('\t').append(dirtySectors).append('\t').append(bufferedWrites).append('\t').append(coalescedWrites)
+                    .append('\t').append(writeBackReadHits).append('\t').append(flushes).append('\t').append(flushedSectors)
+                    .append('\t').append(flushLatencyP99Ms).append('\t');
+            for (int i = 0; i < blockedTimeByProcessMs.length; i++) {
+                stringBuilder.append((i == 0) ? "" : ",").append(blockedTimeByProcessMs[i]);
+            }
+            return stringBuilder.toString();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+// Values of the latest published Metrics snapshot
+public interface MetricsMXBean {
+    long getTime();
+
+    long getQueueDepth();
+
+    long getMaxQueueDepth();
+
+    long getQueuedRequests();
+
+    long getQueueFullRejections();
+
+    long getDispatchedRequests();
+
+    long getMergedRequests();
+
+    double getMeanSeekDistance();
+
+    long getSeekDistanceP99();
+
+    long getMaxSeekDistance();
+
+    long getSeekTimeMs();
+
+    long getRotateTimeMs();
+
+    long getIdleTimeMs();
+
+    long getContextSwitches();
+
+    long getTrackCacheHits();
+
+    long getTrackCacheMisses();
+
+    long getTrackCacheEvictions();
+
+    long getDirtySectors();
+
+    long getBufferedWrites();
+
+    long getCoalescedWrites();
+
+    long getWriteBackReadHits();
+
+    long getFlushes();
+
+    long getFlushedSectors();
+
+    long getFlushLatencyP99Ms();
+
+    long[] getBlockedTimeByProcessMs();
+}
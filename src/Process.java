@@ -1,4 +1,4 @@
-
+import java.util.SplittableRandom;
 
 public class Process {
     public static final int REQUEST_CREATION_TIME_MS = 7;
@@ -6,23 +6,26 @@ public class Process {
     private final Processor processor;
     private final File file;
     private final boolean readOnly;
-    private final Controller controller;
+    private final DriveArray driveArray;
+    private final SplittableRandom random;
     private boolean canCreateRequests = true;
     private State state = new State.CreatingRequest(1);
     private int lastRequestedSectorNumber;
 
-    private int createdRequestsCounter = 0;
+    private long blockedSince = 0;
+    private long blockedTime = 0;
 
     private final RequestStyle requestStyle;
 
-    public Process(Processor processor, File file, boolean readOnly, Controller controller) {
+    public Process(Processor processor, File file, boolean readOnly, DriveArray driveArray, SplittableRandom random) {
         this.processor = processor;
         this.file = file;
         this.readOnly = readOnly;
-        this.controller = controller;
-        this.lastRequestedSectorNumber = file.getBlocks()[0];
+        this.driveArray = driveArray;
+        this.random = random;
+        this.lastRequestedSectorNumber = file.getBlock(0);
 
-        requestStyle = (file.getType() == File.Type.LARGE && Main.Random.nextBoolean())
+        requestStyle = (file.getType() == File.Type.LARGE && random.nextBoolean())
                 ? RequestStyle.SEQUENTIAL
                 : RequestStyle.RANDOM;
     }
@@ -36,11 +39,11 @@ public class Process {
 
                     Query.Type requestType = (readOnly)
                             ? Query.Type.READ
-                            : (Main.Random.nextBoolean()) ? Query.Type.READ : Query.Type.WRITE;
+                            : (random.nextBoolean()) ? Query.Type.READ : Query.Type.WRITE;
 
                     int sectorToBeRequested = (requestStyle == RequestStyle.RANDOM)
-                            ? file.getBlocks()[Main.Random.nextInt(file.getBlocks().length)]
-                            : file.getBlocks()[(lastRequestedSectorNumber + 1) % file.getBlocks().length];
+                            ? file.getBlock(random.nextInt(file.getBlockCount()))
+                            : file.getBlock((lastRequestedSectorNumber + 1) % file.getBlockCount());
 
                     lastRequestedSectorNumber = sectorToBeRequested;
                     Query query = new Query(requestType, sectorToBeRequested, this);
@@ -59,10 +62,12 @@ public class Process {
                 State.CreatedRequest createdRequestState = (State.CreatedRequest) state;
 
                 try {
-                    controller.addRequestToQueue(createdRequestState.getRequest());
-                    createdRequestsCounter++;
+                    driveArray.addRequestToQueue(createdRequestState.getRequest());
+                    processor.requestCreated(this);
                     if (createdRequestState.getRequest().getType() == Query.Type.READ) {
+                        blockedSince = processor.getTime();
                         state = new State.Blocked();
+                        processor.processBlocked(this);
                     } else {
                         state = new State.CreatingRequest(1);
                     }
@@ -84,9 +89,38 @@ public class Process {
         }
     }
 
+    public int getTicksUntilNextEvent(boolean canCreateRequests) {
+        return switch (state.getType()) {
+            case CREATING_QUERY -> REQUEST_CREATION_TIME_MS - ((State.CreatingRequest) state).getProgress() + 1;
+            case CREATED_QUERY -> canCreateRequests ? 1 : Integer.MAX_VALUE;
+            case BLOCKED_QUERY -> Integer.MAX_VALUE;
+            case PROCESSING_QUERY -> REQUEST_PROCESSING_TIME_MS - ((State.ProcessingRequest) state).getProgress() + 1;
+        };
+    }
+
+    public void skip(int ticks) {
+        switch (state.getType()) {
+            case CREATING_QUERY:
+                state = new State.CreatingRequest(((State.CreatingRequest) state).getProgress() + ticks);
+                break;
+
+            case CREATED_QUERY:
+                break;
+
+            case BLOCKED_QUERY:
+                throw new IllegalStateException("Can not tick Blocked process!");
+
+            case PROCESSING_QUERY:
+                state = new State.ProcessingRequest(((State.ProcessingRequest) state).getProgress() + ticks);
+                break;
+        }
+    }
+
     public void deliverRequestResult(Query query) {
         if (query.getType() == Query.Type.READ) {
+            blockedTime += processor.getTime() - blockedSince;
             state = new State.ProcessingRequest(1);
+            processor.processUnblocked(this);
         }
     }
 
@@ -94,12 +128,9 @@ public class Process {
         this.canCreateRequests = canCreateRequests;
     }
 
-    public int getCreatedRequestsCounter() {
-        return createdRequestsCounter;
-    }
-
-    public void resetCreatedRequestsCounter() {
-        createdRequestsCounter = 0;
+    // Includes the block in progress, if any
+    public long getBlockedTime() {
+        return isBlocked() ? blockedTime + processor.getTime() - blockedSince : blockedTime;
     }
 
     public Boolean isBlocked() {
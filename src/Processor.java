@@ -1,108 +1,260 @@
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.IntStream;
+import java.util.Map;
+import java.util.SplittableRandom;
 
-public class Processor {
+public class Processor implements Workload {
 
     public static final int DEFAULT_TIME_QUANTUM_MS = 20;
 
     private final List<Process> processes;
     private final int timeQuantum;
     private final int maxRequestsPerSecond;
+    private final SplittableRandom random;
+    private final Logger logger;
+    private final Metrics metrics;
+
+    // Every process belongs to the run queue of one core; a core runs its own processes round-robin
+    // in index order and steals from the other run queues when all of its processes are blocked.
+    // Processes report blocking and unblocking, so the ready processes of a core are always known
+    // and picking the next one does not scan the blocked ones
+    private final Core[] cores;
+    private final int[] owners;
+    private final Map<Process, Integer> processIndices = new IdentityHashMap<>();
+    private int unblockedProcesses = 0;
+    private Core tickingCore = null;
+    private long workSteals = 0;
 
     private long time = 0;
-    private int currentProcessActiveTime = 0;
-    private int currentActiveProcessIndex = 0;
     private int maxRequestsPerThisSecond = 0;
-    private final int[] maxRequestsPerProcess;
+    // The budget of a second is split evenly, the first `extraRequestProcesses` processes get one request more
+    private int maxRequestsPerEveryProcess = 0;
+    private int extraRequestProcesses = 0;
+    // Requests created by every process in this second, kept here rather than in the processes so that
+    // the once-a-second reset is a single pass over an array
+    private final int[] createdRequests;
+
+    public Processor(List<Process> processes, int timeQuantum, int maxRequestsPerSecond, SplittableRandom random, Logger logger, Metrics metrics) {
+        this(processes, 1, timeQuantum, maxRequestsPerSecond, random, logger, metrics);
+    }
 
-    public Processor(List<Process> processes, int timeQuantum, int maxRequestsPerSecond) {
+    public Processor(List<Process> processes, int coreQuantity, int timeQuantum, int maxRequestsPerSecond, SplittableRandom random,
+                     Logger logger, Metrics metrics) {
+        if (coreQuantity <= 0) {
+            throw new IllegalArgumentException("coreQuantity should be greater than 0");
+        }
         this.processes = processes;
         this.timeQuantum = (timeQuantum <= 0) ? DEFAULT_TIME_QUANTUM_MS : timeQuantum;
         this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.random = random;
+        this.logger = logger;
+        this.metrics = metrics;
 
-        this.maxRequestsPerProcess = new int[Main.PROCESS_QUANTITY];
         initializeMaxRequestsPerProcess();
+        this.createdRequests = new int[Main.PROCESS_QUANTITY];
+
+        this.owners = new int[Main.PROCESS_QUANTITY];
+        this.cores = new Core[coreQuantity];
+        for (int i = 0; i < coreQuantity; i++) {
+            cores[i] = new Core(i, (i < owners.length) ? i : -1, owners.length);
+        }
     }
 
-    private void initializeMaxRequestsPerProcess() {
-        if (maxRequestsPerSecond > 0) {
-            maxRequestsPerThisSecond = Main.getExponentiallyDistributedInt(maxRequestsPerSecond);
+    // Processes join the run queue of core `index % coreQuantity`
+    public void addProcess(Process process) {
+        int index = processes.size();
+        if (index >= owners.length) {
+            throw new IllegalStateException("Processor was created for " + owners.length + " processes");
+        }
+        processes.add(process);
+        processIndices.put(process, index);
 
-            int usedRequests = 0;
-            int curIndex = 0;
+        Core owner = cores[index % cores.length];
+        owners[index] = owner.id;
+        owner.ownedProcesses.add(index);
+        if (!process.isBlocked()) {
+            owner.readyProcesses.add(index);
+            unblockedProcesses++;
+        }
+    }
 
-            Arrays.fill(maxRequestsPerProcess, 0);
+    public void processBlocked(Process process) {
+        int index = processIndices.get(process);
+        if (cores[owners[index]].readyProcesses.remove(index)) {
+            unblockedProcesses--;
+        }
+    }
 
-            while (usedRequests < maxRequestsPerThisSecond) {
-                maxRequestsPerProcess[curIndex] += 1;
-                usedRequests++;
-                curIndex = (curIndex + 1) % maxRequestsPerProcess.length;
-            }
+    public void processUnblocked(Process process) {
+        int index = processIndices.get(process);
+        if (cores[owners[index]].readyProcesses.add(index)) {
+            unblockedProcesses++;
         }
     }
 
-    private void resetCreatedRequestsCounter() {
-        for (Process process : processes) {
-            Logger.write(Logger.Entity.CREATED_REQUESTS_COUNTER, process.getCreatedRequestsCounter() + ", ");
-            process.resetCreatedRequestsCounter();
+    public void requestCreated(Process process) {
+        createdRequests[processIndices.get(process)]++;
+    }
+
+    private void initializeMaxRequestsPerProcess() {
+        if (maxRequestsPerSecond > 0) {
+            maxRequestsPerThisSecond = Main.getExponentiallyDistributedInt(random, maxRequestsPerSecond);
+
+            maxRequestsPerEveryProcess = maxRequestsPerThisSecond / Main.PROCESS_QUANTITY;
+            extraRequestProcesses = maxRequestsPerThisSecond % Main.PROCESS_QUANTITY;
         }
-        Logger.write(Logger.Entity.CREATED_REQUESTS_COUNTER, "\n");
     }
 
+    private int getMaxRequests(int processIndex) {
+        return maxRequestsPerEveryProcess + ((processIndex < extraRequestProcesses) ? 1 : 0);
+    }
+
+    private void resetCreatedRequestsCounter() {
+        int[] createdRequestsCounters = Arrays.copyOf(createdRequests, processes.size());
+        Arrays.fill(createdRequests, 0);
+        logger.writeRow(Logger.Entity.CREATED_REQUESTS_COUNTER, createdRequestsCounters);
+    }
+
+    @Override
     public void tick() {
         if (time % 1_000L == 0L) {
             initializeMaxRequestsPerProcess();
             resetCreatedRequestsCounter();
-            Logger.write(Logger.Entity.MAX_RPS, maxRequestsPerThisSecond + "\n");
-        }
-
-        Process currentProcess = processes.get(currentActiveProcessIndex);
-        if (currentProcess.isBlocked()) {
-            Optional<Process> firstUnblockedAfterCurrent = IntStream.range(currentActiveProcessIndex + 1, processes.size())
-                    .filter(i -> !processes.get(i).isBlocked())
-                    .mapToObj(processes::get)
-                    .findFirst();
-
-            if (firstUnblockedAfterCurrent.isPresent()) {
-                currentProcess = firstUnblockedAfterCurrent.get();
-                currentActiveProcessIndex = processes.indexOf(currentProcess);
-            } else {
-                Optional<Process> minIndexUnblocked = IntStream.range(0, processes.size())
-                        .filter(i -> !processes.get(i).isBlocked())
-                        .mapToObj(processes::get)
-                        .min(Comparator.comparingInt(processes::indexOf));
-
-                currentProcess = minIndexUnblocked.orElse(null);
-                if (currentProcess != null) {
-                    currentActiveProcessIndex = processes.indexOf(currentProcess);
-                }
+            logger.writeValue(Logger.Entity.MAX_RPS, maxRequestsPerThisSecond);
+        }
+
+        for (Core core : cores) {
+            tickingCore = core;
+            tick(core);
+        }
+        tickingCore = null;
+
+        time++;
+    }
+
+    private void tick(Core core) {
+        Process currentProcess = (core.currentProcessIndex < 0) ? null : processes.get(core.currentProcessIndex);
+        if (currentProcess == null || currentProcess.isBlocked()) {
+            int nextUnblocked = core.readyProcesses.nextSetBitCyclic(core.currentProcessIndex);
+            if (nextUnblocked < 0) {
+                nextUnblocked = steal(core);
+            }
+
+            currentProcess = (nextUnblocked < 0) ? null : processes.get(nextUnblocked);
+            if (currentProcess != null) {
+                core.currentProcessIndex = nextUnblocked;
             }
         }
 
         if (currentProcess != null) {
-            currentProcess.setCanCreateRequests(currentProcess.getCreatedRequestsCounter() < maxRequestsPerProcess[currentActiveProcessIndex]);
+            currentProcess.setCanCreateRequests(createdRequests[core.currentProcessIndex] < getMaxRequests(core.currentProcessIndex));
             currentProcess.tick();
-            currentProcessActiveTime++;
+            core.currentProcessActiveTime++;
         }
 
-        time++;
+        if (core.currentProcessActiveTime == timeQuantum) {
+            core.currentProcessIndex = core.ownedProcesses.nextSetBitCyclic(core.currentProcessIndex);
+            core.currentProcessActiveTime = 0;
+        }
+    }
+
+    // Moves the lowest-index unblocked process of the nearest core that is not running it into the thief's run queue
+    private int steal(Core thief) {
+        for (int offset = 1; offset < cores.length; offset++) {
+            Core victim = cores[(thief.id + offset) % cores.length];
+            int index = victim.readyProcesses.nextSetBit(0);
+            if (index >= 0 && index == victim.currentProcessIndex) {
+                index = victim.readyProcesses.nextSetBit(index + 1);
+            }
+            if (index < 0) {
+                continue;
+            }
 
-        if (currentProcessActiveTime == timeQuantum) {
-            currentActiveProcessIndex = (currentActiveProcessIndex + 1) % Main.PROCESS_QUANTITY;
-            currentProcessActiveTime = 0;
+            victim.ownedProcesses.remove(index);
+            victim.readyProcesses.remove(index);
+            thief.ownedProcesses.add(index);
+            thief.readyProcesses.add(index);
+            owners[index] = thief.id;
+            workSteals++;
+            return index;
         }
+        return -1;
     }
 
+    @Override
+    public int getTicksUntilNextEvent() {
+        int ticksUntilNextEvent = (int) ((1_000L - time % 1_000L) % 1_000L) + 1;
+
+        // An idle core only has something to pick up when an unblocked process is not already running on another core
+        boolean idleCore = false;
+        int runningProcesses = 0;
+        for (Core core : cores) {
+            Process currentProcess = (core.currentProcessIndex < 0) ? null : processes.get(core.currentProcessIndex);
+            if (currentProcess == null || currentProcess.isBlocked()) {
+                idleCore = true;
+                continue;
+            }
+            runningProcesses++;
+
+            boolean canCreateRequests = createdRequests[core.currentProcessIndex] < getMaxRequests(core.currentProcessIndex);
+            int ticksUntilProcessEvent = currentProcess.getTicksUntilNextEvent(canCreateRequests);
+            int ticksUntilQuantumExpires = timeQuantum - core.currentProcessActiveTime;
+
+            ticksUntilNextEvent = Math.min(ticksUntilNextEvent, Math.min(ticksUntilProcessEvent, ticksUntilQuantumExpires));
+        }
+        if (idleCore && unblockedProcesses > runningProcesses) {
+            return 1;
+        }
+        return ticksUntilNextEvent;
+    }
+
+    @Override
+    public void skip(int ticks) {
+        for (Core core : cores) {
+            Process currentProcess = (core.currentProcessIndex < 0) ? null : processes.get(core.currentProcessIndex);
+            if (currentProcess != null && !currentProcess.isBlocked()) {
+                currentProcess.setCanCreateRequests(createdRequests[core.currentProcessIndex] < getMaxRequests(core.currentProcessIndex));
+                currentProcess.skip(ticks);
+                core.currentProcessActiveTime += ticks;
+            }
+        }
+
+        time += ticks;
+    }
+
+    // Only called by the process that the ticking core is running
     public void switchContext() {
-        currentActiveProcessIndex = (currentActiveProcessIndex + 1) % Main.PROCESS_QUANTITY;
-        currentProcessActiveTime = 0;
+        metrics.contextSwitched();
+        tickingCore.currentProcessIndex = tickingCore.ownedProcesses.nextSetBitCyclic(tickingCore.currentProcessIndex);
+        tickingCore.currentProcessActiveTime = 0;
+    }
+
+    public int getCoreQuantity() {
+        return cores.length;
     }
 
+    public long getWorkSteals() {
+        return workSteals;
+    }
+
+    @Override
     public long getTime() {
         return time;
     }
-}
 
+    private static class Core {
+        private final int id;
+        private final IndexSet ownedProcesses;
+        private final IndexSet readyProcesses;
+        private int currentProcessIndex;
+        private int currentProcessActiveTime = 0;
+
+        private Core(int id, int currentProcessIndex, int processQuantity) {
+            this.id = id;
+            this.currentProcessIndex = currentProcessIndex;
+            this.ownedProcesses = new IndexSet(processQuantity);
+            this.readyProcesses = new IndexSet(processQuantity);
+        }
+    }
+}
@@ -1,18 +1,42 @@
+import java.util.Objects;
+
 public class Query {
     private final Type type;
     private final int sectorNumber;
     private final Process process;
+    // Replayed requests come from a stream of the trace instead of a process
+    private final int stream;
+    // When the request reached the drive array, on the drives' clock
+    private long arrivalTime = 0;
 
     public Query(Type type, int sectorNumber, Process process) {
+        this(type, sectorNumber, process, -1);
+    }
+
+    public Query(Type type, int sectorNumber, int stream) {
+        this(type, sectorNumber, null, stream);
+    }
+
+    private Query(Type type, int sectorNumber, Process process, int stream) {
         this.type = type;
         this.sectorNumber = sectorNumber;
         this.process = process;
+        this.stream = stream;
+    }
+
+    // The same request addressed to another sector, as a member drive of an array sees it
+    public Query atSector(int sectorNumber) {
+        return new Query(type, sectorNumber, process, stream);
     }
 
     public Type getType() {
         return type;
     }
 
+    public int getSectorNumber() {
+        return sectorNumber;
+    }
+
     public int getTrackNumber() {
         return sectorNumber / Main.SECTORS_PER_TRACK;
     }
@@ -21,6 +45,18 @@ public class Query {
         return process;
     }
 
+    public int getStream() {
+        return stream;
+    }
+
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    public void setArrivalTime(long arrivalTime) {
+        this.arrivalTime = arrivalTime;
+    }
+
     public enum Type {
         READ, WRITE
     }
@@ -34,14 +70,15 @@ public class Query {
 
         if (sectorNumber != query.sectorNumber) return false;
         if (type != query.type) return false;
-        return process.equals(query.process);
+        if (stream != query.stream) return false;
+        return Objects.equals(process, query.process);
     }
 
     @Override
     public int hashCode() {
         int result = type.hashCode();
         result = 31 * result + sectorNumber;
-        result = 31 * result + process.hashCode();
+        result = 31 * result + ((process == null) ? stream : process.hashCode());
         return result;
     }
 }
@@ -1,10 +1,21 @@
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 interface QuerySelectionAlgorithm {
     void tryAddRequestToQueue(Query query) throws QueueFullException;
+    boolean isFull();
     Query chooseRequest(int currentDrivePosition);
+    // Policies that need more of the drive's state than the head's track override this one
+    default Query chooseRequest(HardDrive hardDrive) {
+        return chooseRequest(hardDrive.getPosition());
+    }
     class QueueFullException extends Exception {
     }
 }
@@ -20,12 +31,17 @@ class FCFS implements QuerySelectionAlgorithm {
 
     @Override
     public void tryAddRequestToQueue(Query query) throws QueueFullException {
-        if (queue.size() == maxQueueSize) {
+        if (isFull()) {
             throw new QueueFullException();
         }
         queue.add(query);
     }
 
+    @Override
+    public boolean isFull() {
+        return queue.size() == maxQueueSize;
+    }
+
     @Override
     public Query chooseRequest(int currentDrivePosition) {
         return (queue.isEmpty()) ? null : queue.remove(0);
@@ -43,12 +59,17 @@ class SSTF implements QuerySelectionAlgorithm {
 
     @Override
     public void tryAddRequestToQueue(Query query) throws QueueFullException {
-        if (queue.size() == maxQueueSize) {
+        if (isFull()) {
             throw new QueueFullException();
         }
         queue.add(query);
     }
 
+    @Override
+    public boolean isFull() {
+        return queue.size() == maxQueueSize;
+    }
+
     @Override
     public Query chooseRequest(int currentDrivePosition) {
         Query closestTrackQuery = queue.stream()
@@ -63,6 +84,174 @@ class SSTF implements QuerySelectionAlgorithm {
     }
 }
 
+class TrackIndexedSSTF implements QuerySelectionAlgorithm {
+    private final int maxQueueSize;
+    private final TreeMap<Integer, ArrayDeque<Entry>> queueByTrack;
+    private int size = 0;
+    private long nextSequenceNumber = 0;
+
+    public TrackIndexedSSTF(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+        this.queueByTrack = new TreeMap<>();
+    }
+
+    @Override
+    public void tryAddRequestToQueue(Query query) throws QueueFullException {
+        if (isFull()) {
+            throw new QueueFullException();
+        }
+        queueByTrack.computeIfAbsent(query.getTrackNumber(), track -> new ArrayDeque<>())
+                .addLast(new Entry(nextSequenceNumber++, query));
+        size++;
+    }
+
+    @Override
+    public boolean isFull() {
+        return size == maxQueueSize;
+    }
+
+    @Override
+    public Query chooseRequest(int currentDrivePosition) {
+        Map.Entry<Integer, ArrayDeque<Entry>> lower = queueByTrack.floorEntry(currentDrivePosition);
+        Map.Entry<Integer, ArrayDeque<Entry>> higher = queueByTrack.ceilingEntry(currentDrivePosition);
+
+        Map.Entry<Integer, ArrayDeque<Entry>> closest;
+        if (lower == null) {
+            closest = higher;
+        } else if (higher == null) {
+            closest = lower;
+        } else {
+            int lowerDistance = currentDrivePosition - lower.getKey();
+            int higherDistance = higher.getKey() - currentDrivePosition;
+            if (lowerDistance != higherDistance) {
+                closest = (lowerDistance < higherDistance) ? lower : higher;
+            } else {
+                // Same distance on both sides: serve the older request, as SSTF does
+                closest = (lower.getValue().peekFirst().sequenceNumber() < higher.getValue().peekFirst().sequenceNumber())
+                        ? lower
+                        : higher;
+            }
+        }
+
+        if (closest == null) {
+            return null;
+        }
+
+        ArrayDeque<Entry> bucket = closest.getValue();
+        Query closestTrackQuery = bucket.pollFirst().query();
+        if (bucket.isEmpty()) {
+            queueByTrack.remove(closest.getKey());
+        }
+        size--;
+
+        return closestTrackQuery;
+    }
+
+    private record Entry(long sequenceNumber, Query query) {
+    }
+}
+
+// Shortest positioning time first: the request that the drive can reach soonest, seek plus the wait until its
+// sector comes under the head. Requests are indexed by sector, so on every track only the first sector to pass
+// under the head is a candidate, and tracks are visited outwards from the head until the seek alone takes
+// longer than the best candidate so far. Without a drive to ask, it falls back to the nearest track
+class SPTF implements QuerySelectionAlgorithm {
+    private final int maxQueueSize;
+    private final TreeMap<Integer, ArrayDeque<Query>> queueBySector;
+    private int size = 0;
+
+    public SPTF(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+        this.queueBySector = new TreeMap<>();
+    }
+
+    @Override
+    public void tryAddRequestToQueue(Query query) throws QueueFullException {
+        if (isFull()) {
+            throw new QueueFullException();
+        }
+        queueBySector.computeIfAbsent(query.getSectorNumber(), sector -> new ArrayDeque<>()).addLast(query);
+        size++;
+    }
+
+    @Override
+    public boolean isFull() {
+        return size == maxQueueSize;
+    }
+
+    @Override
+    public Query chooseRequest(int currentDrivePosition) {
+        Integer lower = getTrackAtOrBelow(currentDrivePosition);
+        Integer higher = getTrackAbove(currentDrivePosition);
+        if (lower == null && higher == null) {
+            return null;
+        }
+        int track = (higher == null || (lower != null && currentDrivePosition - lower <= higher - currentDrivePosition)) ? lower : higher;
+        return take(queueBySector.ceilingKey(track * Main.SECTORS_PER_TRACK));
+    }
+
+    @Override
+    public Query chooseRequest(HardDrive hardDrive) {
+        int head = hardDrive.getPosition();
+        Integer lower = getTrackAtOrBelow(head);
+        Integer higher = getTrackAbove(head);
+
+        int bestSector = -1;
+        int bestTime = Integer.MAX_VALUE;
+        while (lower != null || higher != null) {
+            // Tracks come in order of distance, so once one can not beat the best, none of the rest can
+            boolean lowerIsCloser = higher == null || (lower != null && head - lower <= higher - head);
+            int track = lowerIsCloser ? lower : higher;
+            if (hardDrive.getMinimumPositioningTime(track) >= bestTime) {
+                break;
+            }
+
+            Integer sector = queueBySector.ceilingKey(hardDrive.getFirstReachableSector(track));
+            if (sector == null || sector / Main.SECTORS_PER_TRACK != track) {
+                sector = queueBySector.ceilingKey(track * Main.SECTORS_PER_TRACK);
+            }
+            int time = hardDrive.getPositioningTime(sector);
+            if (time < bestTime) {
+                bestTime = time;
+                bestSector = sector;
+            }
+
+            if (lowerIsCloser) {
+                lower = getTrackBelow(track);
+            } else {
+                higher = getTrackAbove(track);
+            }
+        }
+
+        return (bestSector < 0) ? null : take(bestSector);
+    }
+
+    private Integer getTrackAtOrBelow(int track) {
+        Integer sector = queueBySector.lowerKey((track + 1) * Main.SECTORS_PER_TRACK);
+        return (sector == null) ? null : sector / Main.SECTORS_PER_TRACK;
+    }
+
+    private Integer getTrackBelow(int track) {
+        Integer sector = queueBySector.lowerKey(track * Main.SECTORS_PER_TRACK);
+        return (sector == null) ? null : sector / Main.SECTORS_PER_TRACK;
+    }
+
+    private Integer getTrackAbove(int track) {
+        Integer sector = queueBySector.ceilingKey((track + 1) * Main.SECTORS_PER_TRACK);
+        return (sector == null) ? null : sector / Main.SECTORS_PER_TRACK;
+    }
+
+    private Query take(int sector) {
+        ArrayDeque<Query> bucket = queueBySector.get(sector);
+        Query query = bucket.pollFirst();
+        if (bucket.isEmpty()) {
+            queueBySector.remove(sector);
+        }
+        size--;
+        return query;
+    }
+}
+
 class F_LOOK implements QuerySelectionAlgorithm {
     private final int maxQueueSize;
     private QueueState queueState;
@@ -81,22 +270,24 @@ class F_LOOK implements QuerySelectionAlgorithm {
 
     @Override
     public void tryAddRequestToQueue(Query query) throws QueueFullException {
+        if (isFull()) {
+            throw new QueueFullException();
+        }
         switch (queueState) {
-            case FIRST_QUEUE_ACTIVE -> {
-                if (secondQueue.size() == maxQueueSize / 2) {
-                    throw new QueueFullException();
-                }
-                secondQueue.add(query);
-            }
-            case SECOND_QUEUE_ACTIVE -> {
-                if (firstQueue.size() == maxQueueSize / 2) {
-                    throw new QueueFullException();
-                }
-                firstQueue.add(query);
-            }
+            case FIRST_QUEUE_ACTIVE -> secondQueue.add(query);
+            case SECOND_QUEUE_ACTIVE -> firstQueue.add(query);
         }
     }
 
+    // Only the queue that is being filled counts, the active one is drained by chooseRequest
+    @Override
+    public boolean isFull() {
+        return switch (queueState) {
+            case FIRST_QUEUE_ACTIVE -> secondQueue.size() == maxQueueSize / 2;
+            case SECOND_QUEUE_ACTIVE -> firstQueue.size() == maxQueueSize / 2;
+        };
+    }
+
     @Override
     public Query chooseRequest(int currentDrivePosition) {
         switch (queueState) {
@@ -179,4 +370,479 @@ class F_LOOK implements QuerySelectionAlgorithm {
         ASCENDING,
         DESCENDING
     }
-}
\ No newline at end of file
+}
+
+class SortedF_LOOK implements QuerySelectionAlgorithm {
+    private final int maxQueueSize;
+    private LOOKDirection lookDirection;
+
+    private final List<Query> pendingQueue;
+
+    // Active batch sorted by (track, arrival order). Requests in [upperStart, batchSize) are served
+    // left to right while ascending, requests in [0, lowerEnd) track group by track from the right
+    // while descending. The group being served descending is [groupCursor, groupEnd).
+    private Query[] batch;
+    private int[] batchTracks;
+    private long[] sortKeys;
+    private int batchSize = 0;
+    private int upperStart = 0;
+    private int lowerEnd = 0;
+    private int groupCursor = 0;
+    private int groupEnd = 0;
+
+    public SortedF_LOOK(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+        this.lookDirection = LOOKDirection.ASCENDING;
+        this.pendingQueue = new ArrayList<>();
+
+        int batchCapacity = Math.max(maxQueueSize / 2, 1);
+        this.batch = new Query[batchCapacity];
+        this.batchTracks = new int[batchCapacity];
+        this.sortKeys = new long[batchCapacity];
+    }
+
+    @Override
+    public void tryAddRequestToQueue(Query query) throws QueueFullException {
+        if (isFull()) {
+            throw new QueueFullException();
+        }
+        pendingQueue.add(query);
+    }
+
+    @Override
+    public boolean isFull() {
+        return pendingQueue.size() == maxQueueSize / 2;
+    }
+
+    @Override
+    public Query chooseRequest(int currentDrivePosition) {
+        if (!hasUpperRequests() && !hasLowerRequests()) {
+            if (pendingQueue.isEmpty()) {
+                return null;
+            }
+            freezePendingQueue(currentDrivePosition);
+        }
+
+        switch (lookDirection) {
+            case ASCENDING -> {
+                if (hasUpperRequests()) {
+                    return nextAscending();
+                }
+                lookDirection = LOOKDirection.DESCENDING;
+                return nextDescending();
+            }
+            case DESCENDING -> {
+                if (hasLowerRequests()) {
+                    return nextDescending();
+                }
+                lookDirection = LOOKDirection.ASCENDING;
+                return nextAscending();
+            }
+        }
+        return null;
+    }
+
+    private void freezePendingQueue(int currentDrivePosition) {
+        batchSize = pendingQueue.size();
+        if (batchSize > batch.length) {
+            batch = new Query[batchSize];
+            batchTracks = new int[batchSize];
+            sortKeys = new long[batchSize];
+        }
+
+        for (int i = 0; i < batchSize; i++) {
+            sortKeys[i] = ((long) pendingQueue.get(i).getTrackNumber() << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, batchSize);
+
+        for (int i = 0; i < batchSize; i++) {
+            batch[i] = pendingQueue.get((int) sortKeys[i]);
+            batchTracks[i] = (int) (sortKeys[i] >>> 32);
+        }
+        Arrays.fill(batch, batchSize, batch.length, null);
+        pendingQueue.clear();
+
+        // Requests on the current track belong to the side the head is moving towards
+        int split = (lookDirection == LOOKDirection.ASCENDING)
+                ? firstIndexWithTrackAtLeast(currentDrivePosition)
+                : firstIndexWithTrackAtLeast(currentDrivePosition + 1);
+        upperStart = split;
+        lowerEnd = split;
+        groupCursor = 0;
+        groupEnd = 0;
+    }
+
+    private int firstIndexWithTrackAtLeast(int track) {
+        int low = 0;
+        int high = batchSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (batchTracks[middle] < track) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean hasUpperRequests() {
+        return upperStart < batchSize;
+    }
+
+    private boolean hasLowerRequests() {
+        return groupCursor < groupEnd || lowerEnd > 0;
+    }
+
+    private Query nextAscending() {
+        Query query = batch[upperStart];
+        batch[upperStart++] = null;
+        return query;
+    }
+
+    private Query nextDescending() {
+        if (groupCursor == groupEnd) {
+            groupEnd = lowerEnd;
+            groupCursor = lowerEnd - 1;
+            while (groupCursor > 0 && batchTracks[groupCursor - 1] == batchTracks[groupEnd - 1]) {
+                groupCursor--;
+            }
+            lowerEnd = groupCursor;
+        }
+        Query query = batch[groupCursor];
+        batch[groupCursor++] = null;
+        return query;
+    }
+
+    private enum LOOKDirection {
+        ASCENDING,
+        DESCENDING
+    }
+}
+
+// Deadline scheduling: requests go out in batches of fifoBatch, in track order from the head like LOOK, until
+// the oldest read or write has waited past its expiry; the next batch then starts from the request that expired
+// first. Reads block their process, so they expire sooner than writes. Requests are kept in a sector index and
+// in one arrival queue per type; a request served from the index is only marked in its arrival queue and
+// dropped when it reaches the head, so every operation is O(log n)
+class Deadline implements QuerySelectionAlgorithm {
+    public static final int DEFAULT_READ_EXPIRE_MS = 500;
+    public static final int DEFAULT_WRITE_EXPIRE_MS = 5000;
+    public static final int DEFAULT_FIFO_BATCH = 16;
+
+    private final int maxQueueSize;
+    private final int fifoBatch;
+    private final Map<Query.Type, Integer> expireMs = new EnumMap<>(Query.Type.class);
+    private final TreeMap<Integer, ArrayDeque<Entry>> queueBySector = new TreeMap<>();
+    private final Map<Query.Type, ArrayDeque<Entry>> queueByArrival = new EnumMap<>(Query.Type.class);
+    private int size = 0;
+    private long time = 0;
+
+    private int batchRemaining = 0;
+    private int lastSector = 0;
+    private boolean ascending = true;
+
+    public Deadline(int maxQueueSize) {
+        this(maxQueueSize, DEFAULT_READ_EXPIRE_MS, DEFAULT_WRITE_EXPIRE_MS, DEFAULT_FIFO_BATCH);
+    }
+
+    public Deadline(int maxQueueSize, int readExpireMs, int writeExpireMs, int fifoBatch) {
+        if (fifoBatch <= 0) {
+            throw new IllegalArgumentException("fifoBatch should be greater than 0");
+        }
+        this.maxQueueSize = maxQueueSize;
+        this.fifoBatch = fifoBatch;
+        expireMs.put(Query.Type.READ, readExpireMs);
+        expireMs.put(Query.Type.WRITE, writeExpireMs);
+        for (Query.Type type : Query.Type.values()) {
+            queueByArrival.put(type, new ArrayDeque<>());
+        }
+    }
+
+    @Override
+    public void tryAddRequestToQueue(Query query) throws QueueFullException {
+        if (isFull()) {
+            throw new QueueFullException();
+        }
+        Entry entry = new Entry(query);
+        queueBySector.computeIfAbsent(query.getSectorNumber(), sector -> new ArrayDeque<>()).addLast(entry);
+        queueByArrival.get(query.getType()).addLast(entry);
+        size++;
+    }
+
+    @Override
+    public boolean isFull() {
+        return size == maxQueueSize;
+    }
+
+    // Without a drive to ask, time stands still at the last decision that had one
+    @Override
+    public Query chooseRequest(int currentDrivePosition) {
+        if (size == 0) {
+            return null;
+        }
+
+        if (batchRemaining > 0) {
+            batchRemaining--;
+            return take(getNextInTrackOrder(lastSector));
+        }
+
+        batchRemaining = fifoBatch - 1;
+        Query expired = getFirstExpired();
+        return take((expired != null)
+                ? expired.getSectorNumber()
+                : getNextInTrackOrder(currentDrivePosition * Main.SECTORS_PER_TRACK));
+    }
+
+    @Override
+    public Query chooseRequest(HardDrive hardDrive) {
+        time = hardDrive.getTime();
+        return chooseRequest(hardDrive.getPosition());
+    }
+
+    // The oldest request of each type is the first to expire, and of the two the one with the earlier deadline
+    private Query getFirstExpired() {
+        Query expired = null;
+        long expiredDeadline = Long.MAX_VALUE;
+        for (Query.Type type : Query.Type.values()) {
+            Query oldest = peekOldest(type);
+            if (oldest == null) {
+                continue;
+            }
+            long deadline = oldest.getArrivalTime() + expireMs.get(type);
+            if (deadline <= time && deadline < expiredDeadline) {
+                expired = oldest;
+                expiredDeadline = deadline;
+            }
+        }
+        return expired;
+    }
+
+    private Query peekOldest(Query.Type type) {
+        ArrayDeque<Entry> arrivals = queueByArrival.get(type);
+        while (!arrivals.isEmpty() && arrivals.peekFirst().served) {
+            arrivals.pollFirst();
+        }
+        return arrivals.isEmpty() ? null : arrivals.peekFirst().query;
+    }
+
+    // Keeps going in the current direction and turns around at the last request, as LOOK does
+    private int getNextInTrackOrder(int sector) {
+        Integer next = ascending ? queueBySector.ceilingKey(sector) : queueBySector.floorKey(sector);
+        if (next == null) {
+            ascending = !ascending;
+            next = ascending ? queueBySector.ceilingKey(sector) : queueBySector.floorKey(sector);
+        }
+        return next;
+    }
+
+    // Requests to one sector go out in arrival order; an expired request behind an older one to its
+    // sector is served right after it, as the next batch continues from the same sector
+    private Query take(int sector) {
+        ArrayDeque<Entry> bucket = queueBySector.get(sector);
+        Entry entry = bucket.pollFirst();
+        if (bucket.isEmpty()) {
+            queueBySector.remove(sector);
+        }
+        entry.served = true;
+        lastSector = sector;
+        size--;
+        return entry.query;
+    }
+
+    private static class Entry {
+        private final Query query;
+        private boolean served = false;
+
+        private Entry(Query query) {
+            this.query = query;
+        }
+    }
+}
+
+// Switches between FCFS, SSTF and LOOK as the load changes. The modes are orders over one shared index of
+// the pending requests, by track and by arrival, so a switch moves nothing. The decision uses moving averages
+// of the queue depth, the arrival rate and the seek distance of the chosen requests:
+// - FCFS while the queue is nearly empty and requests arrive slowly, when every order picks the same request
+// - LOOK while the queue stays deep and SSTF keeps seeking short distances, when the head lingers in one
+//   region and the requests at the far end of the disk wait longest
+// - SSTF otherwise
+// Every threshold has separate enter and exit values, and a mode is kept for at least MIN_DWELL_MS.
+// FCFS, TrackIndexedSSTF and SortedF_LOOK each own their storage (a list, track buckets, frozen batches), so
+// delegating to them would move every pending request on a switch; the modes here are the same orders
+class Adaptive implements QuerySelectionAlgorithm {
+    public static final int MIN_DWELL_MS = 500;
+    private static final double SMOOTHING = 1.0 / 8;
+    private static final double FCFS_ENTER_DEPTH = 0.5;
+    private static final double FCFS_EXIT_DEPTH = 1.5;
+    private static final double FCFS_ENTER_ARRIVALS_PER_SECOND = 20;
+    private static final double FCFS_EXIT_ARRIVALS_PER_SECOND = 40;
+    private static final double LOOK_ENTER_DEPTH_SHARE = 0.5;
+    private static final double LOOK_EXIT_DEPTH_SHARE = 0.3;
+    private static final double LOOK_ENTER_SEEK_SHARE = 0.1;
+
+    private final int maxQueueSize;
+    private final TreeMap<Integer, ArrayDeque<Entry>> queueByTrack = new TreeMap<>();
+    // Served requests leave both orders at once, so neither holds more than the pending requests
+    private final LinkedHashSet<Entry> queueByArrival = new LinkedHashSet<>();
+    private int size = 0;
+    private long nextSequenceNumber = 0;
+    private long time = 0;
+
+    private double averageDepth = 0;
+    private double averageInterarrivalMs = Double.POSITIVE_INFINITY;
+    private long lastArrivalTime = -1;
+    private double averageSeekDistance = 0;
+
+    private Mode mode = Mode.FCFS;
+    private boolean ascending = true;
+    private long modeSince = 0;
+    private final long[] timeInMode = new long[Mode.values().length];
+    private final List<Switch> switches = new ArrayList<>();
+
+    public Adaptive(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    @Override
+    public void tryAddRequestToQueue(Query query) throws QueueFullException {
+        if (isFull()) {
+            throw new QueueFullException();
+        }
+        Entry entry = new Entry(nextSequenceNumber++, query);
+        queueByTrack.computeIfAbsent(query.getTrackNumber(), track -> new ArrayDeque<>()).addLast(entry);
+        queueByArrival.add(entry);
+        size++;
+
+        if (lastArrivalTime >= 0) {
+            double interarrivalMs = query.getArrivalTime() - lastArrivalTime;
+            averageInterarrivalMs = Double.isInfinite(averageInterarrivalMs)
+                    ? interarrivalMs
+                    : averageInterarrivalMs + SMOOTHING * (interarrivalMs - averageInterarrivalMs);
+        }
+        lastArrivalTime = query.getArrivalTime();
+    }
+
+    @Override
+    public boolean isFull() {
+        return size == maxQueueSize;
+    }
+
+    // Without a drive to ask, time stands still at the last decision that had one
+    @Override
+    public Query chooseRequest(int currentDrivePosition) {
+        if (size == 0) {
+            return null;
+        }
+
+        averageDepth += SMOOTHING * (size - averageDepth);
+        Mode nextMode = chooseMode();
+        if (nextMode != mode && time - modeSince >= MIN_DWELL_MS) {
+            switches.add(new Switch(time, mode, nextMode));
+            timeInMode[mode.ordinal()] += time - modeSince;
+            mode = nextMode;
+            modeSince = time;
+        }
+
+        int track = switch (mode) {
+            case FCFS -> peekOldest().getTrackNumber();
+            case SSTF -> getNearestTrack(currentDrivePosition);
+            case LOOK -> getNextTrackInDirection(currentDrivePosition);
+        };
+        averageSeekDistance += SMOOTHING * (Math.abs(track - currentDrivePosition) - averageSeekDistance);
+        return take(track);
+    }
+
+    @Override
+    public Query chooseRequest(HardDrive hardDrive) {
+        time = hardDrive.getTime();
+        return chooseRequest(hardDrive.getPosition());
+    }
+
+    private Mode chooseMode() {
+        double arrivalsPerSecond = 1000.0 / averageInterarrivalMs;
+        boolean light = averageDepth < FCFS_ENTER_DEPTH && arrivalsPerSecond < FCFS_ENTER_ARRIVALS_PER_SECOND;
+        boolean deep = averageDepth > LOOK_ENTER_DEPTH_SHARE * maxQueueSize
+                && averageSeekDistance < LOOK_ENTER_SEEK_SHARE * Main.TRACK_QUANTITY;
+        return switch (mode) {
+            case FCFS -> (averageDepth > FCFS_EXIT_DEPTH || arrivalsPerSecond > FCFS_EXIT_ARRIVALS_PER_SECOND) ? Mode.SSTF : Mode.FCFS;
+            case SSTF -> light ? Mode.FCFS : deep ? Mode.LOOK : Mode.SSTF;
+            case LOOK -> (averageDepth < LOOK_EXIT_DEPTH_SHARE * maxQueueSize) ? Mode.SSTF : Mode.LOOK;
+        };
+    }
+
+    private Query peekOldest() {
+        return queueByArrival.iterator().next().query;
+    }
+
+    // Same distance on both sides: the older request, as SSTF does
+    private int getNearestTrack(int currentDrivePosition) {
+        Map.Entry<Integer, ArrayDeque<Entry>> lower = queueByTrack.floorEntry(currentDrivePosition);
+        Map.Entry<Integer, ArrayDeque<Entry>> higher = queueByTrack.ceilingEntry(currentDrivePosition);
+        if (lower == null || higher == null) {
+            return (lower == null) ? higher.getKey() : lower.getKey();
+        }
+
+        int lowerDistance = currentDrivePosition - lower.getKey();
+        int higherDistance = higher.getKey() - currentDrivePosition;
+        if (lowerDistance != higherDistance) {
+            return (lowerDistance < higherDistance) ? lower.getKey() : higher.getKey();
+        }
+        return (lower.getValue().peekFirst().sequenceNumber < higher.getValue().peekFirst().sequenceNumber)
+                ? lower.getKey()
+                : higher.getKey();
+    }
+
+    private int getNextTrackInDirection(int currentDrivePosition) {
+        Integer track = ascending ? queueByTrack.ceilingKey(currentDrivePosition) : queueByTrack.floorKey(currentDrivePosition);
+        if (track == null) {
+            ascending = !ascending;
+            track = ascending ? queueByTrack.ceilingKey(currentDrivePosition) : queueByTrack.floorKey(currentDrivePosition);
+        }
+        return track;
+    }
+
+    // Requests to one track go out in arrival order, so the oldest request is always first on its track
+    private Query take(int track) {
+        ArrayDeque<Entry> bucket = queueByTrack.get(track);
+        Entry entry = bucket.pollFirst();
+        if (bucket.isEmpty()) {
+            queueByTrack.remove(track);
+        }
+        queueByArrival.remove(entry);
+        size--;
+        return entry.query;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<Switch> getSwitches() {
+        return switches;
+    }
+
+    // Including the current mode up to `time`
+    public long getTimeInMode(Mode mode, long time) {
+        return timeInMode[mode.ordinal()] + ((mode == this.mode) ? time - modeSince : 0);
+    }
+
+    public record Switch(long time, Mode from, Mode to) {
+    }
+
+    private static class Entry {
+        private final long sequenceNumber;
+        private final Query query;
+
+        private Entry(long sequenceNumber, Query query) {
+            this.sequenceNumber = sequenceNumber;
+            this.query = query;
+        }
+    }
+
+    public enum Mode {
+        FCFS,
+        SSTF,
+        LOOK
+    }
+}
@@ -0,0 +1,53 @@
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Requests waiting in the scheduler queue, indexed by type and track. A request to a track that already has
+// one of the same type queued rides along with it instead of taking a queue slot: the drive serves every
+// sector of a track in the one pass over it, so the whole group completes together
+public class RequestMerger {
+    private final Metrics metrics;
+    private final Map<Query.Type, HashMap<Integer, Group>> groupsByTrack = new EnumMap<>(Query.Type.class);
+
+    public RequestMerger(Metrics metrics) {
+        this.metrics = metrics;
+        for (Query.Type type : Query.Type.values()) {
+            groupsByTrack.put(type, new HashMap<>());
+        }
+    }
+
+    public boolean canMerge(Query query) {
+        return groupsByTrack.get(query.getType()).containsKey(query.getTrackNumber());
+    }
+
+    public boolean tryMerge(Query query) {
+        Group group = groupsByTrack.get(query.getType()).get(query.getTrackNumber());
+        if (group == null) {
+            return false;
+        }
+        group.riders.add(query);
+        metrics.requestMerged();
+        return true;
+    }
+
+    // Called once the request has a slot in the scheduler queue
+    public void queued(Query query) {
+        groupsByTrack.get(query.getType()).put(query.getTrackNumber(), new Group(query, new ArrayList<>()));
+    }
+
+    // The requests that merged into `query` while it waited, in arrival order
+    public List<Query> dispatched(Query query) {
+        Map<Integer, Group> groups = groupsByTrack.get(query.getType());
+        Group group = groups.get(query.getTrackNumber());
+        if (group == null || group.query != query) {
+            return List.of();
+        }
+        groups.remove(query.getTrackNumber());
+        return group.riders;
+    }
+
+    private record Group(Query query, List<Query> riders) {
+    }
+}
@@ -0,0 +1,155 @@
+// One bit per sector in a long[], 8 times smaller than a boolean per sector and without an array
+// per track. rank and select go through a directory of set-bit counts per block of words, which is
+// rebuilt on the first query after the bitmap has changed, since sectors are marked while the disk
+// is laid out and looked up afterwards
+public class SectorBitmap {
+    private static final int WORDS_PER_BLOCK = 64;
+
+    private final long size;
+    private final long[] words;
+    private long cardinality = 0;
+
+    // Set bits before each block; the last entry is the total
+    private long[] blockRanks = null;
+
+    public SectorBitmap(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size should not be negative");
+        }
+        long wordQuantity = (size + 63) >>> 6;
+        if (wordQuantity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Bitmap of " + size + " sectors is too large");
+        }
+        this.size = size;
+        this.words = new long[(int) wordQuantity];
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public boolean get(long sector) {
+        checkSector(sector);
+        return (words[(int) (sector >>> 6)] & (1L << sector)) != 0L;
+    }
+
+    public void set(long sector) {
+        checkSector(sector);
+        int word = (int) (sector >>> 6);
+        long bit = 1L << sector;
+        if ((words[word] & bit) == 0L) {
+            words[word] |= bit;
+            cardinality++;
+            blockRanks = null;
+        }
+    }
+
+    public void clear(long sector) {
+        checkSector(sector);
+        int word = (int) (sector >>> 6);
+        long bit = 1L << sector;
+        if ((words[word] & bit) != 0L) {
+            words[word] &= ~bit;
+            cardinality--;
+            blockRanks = null;
+        }
+    }
+
+    // Smallest set sector that is not less than `from`, or -1
+    public long nextSetBit(long from) {
+        if (from >= size) {
+            return -1;
+        }
+        from = Math.max(from, 0);
+
+        int word = (int) (from >>> 6);
+        long bits = words[word] & (-1L << from);
+        while (bits == 0L) {
+            if (++word == words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+        return ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    // Number of set sectors before `sector`
+    public long rank(long sector) {
+        if (sector <= 0) {
+            return 0;
+        }
+        if (sector >= size) {
+            return cardinality;
+        }
+
+        long[] ranks = getBlockRanks();
+        int word = (int) (sector >>> 6);
+        int block = word / WORDS_PER_BLOCK;
+        long rank = ranks[block];
+        for (int i = block * WORDS_PER_BLOCK; i < word; i++) {
+            rank += Long.bitCount(words[i]);
+        }
+        return rank + Long.bitCount(words[word] & ~(-1L << sector));
+    }
+
+    // The set sector with `rank` set sectors before it, or -1 when fewer are set
+    public long select(long rank) {
+        if (rank < 0 || rank >= cardinality) {
+            return -1;
+        }
+
+        // The last block with at most `rank` set sectors before it, so the next block boundary is past `rank`
+        long[] ranks = getBlockRanks();
+        int low = 0;
+        int high = ranks.length - 2;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (ranks[middle] <= rank) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int block = low;
+
+        long remaining = rank - ranks[block];
+        int word = block * WORDS_PER_BLOCK;
+        while (Long.bitCount(words[word]) <= remaining) {
+            remaining -= Long.bitCount(words[word]);
+            word++;
+        }
+
+        long bits = words[word];
+        for (long i = 0; i < remaining; i++) {
+            bits &= bits - 1;
+        }
+        return ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    private long[] getBlockRanks() {
+        if (blockRanks == null) {
+            int blocks = (words.length + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK;
+            long[] ranks = new long[blocks + 1];
+            for (int block = 0; block < blocks; block++) {
+                long count = 0;
+                int end = Math.min(words.length, (block + 1) * WORDS_PER_BLOCK);
+                for (int i = block * WORDS_PER_BLOCK; i < end; i++) {
+                    count += Long.bitCount(words[i]);
+                }
+                ranks[block + 1] = ranks[block] + count;
+            }
+            blockRanks = ranks;
+        }
+        return blockRanks;
+    }
+
+    private void checkSector(long sector) {
+        if (sector < 0 || sector >= size) {
+            throw new IndexOutOfBoundsException("Sector " + sector + " out of bounds for " + size + " sectors");
+        }
+    }
+}
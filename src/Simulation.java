@@ -0,0 +1,389 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+public class Simulation {
+    private final List<QuerySelectionAlgorithm> policies;
+    private final DriveArray.Level raidLevel;
+    private final int cores;
+    private final int writeBackSectors;
+    private final int maxRPS;
+    private final int queueSize;
+    private final long seed;
+    // Null when the requests come from the simulated processes
+    private final TraceReplay.Options trace;
+    private final Logger logger;
+
+    // Independent streams split from the run seed, so that the draws of one part of the workload
+    // do not shift the others when call order changes
+    private final SplittableRandom layoutRandom;
+    private final SplittableRandom arrivalsRandom;
+    private final SplittableRandom processesRandom;
+
+    private int time = 0;
+    private int completedRequestsCounter = 0;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<Query.Type, LatencyHistogram> latencyByRequestType = new EnumMap<>(Query.Type.class);
+    private final Map<Process, LatencyHistogram> latencyByProcess = new IdentityHashMap<>();
+    private final Map<Integer, LatencyHistogram> latencyByStream = new TreeMap<>();
+    // From reaching the drive array to completion, so the time spent in the queue is included
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final Map<Query.Type, LatencyHistogram> responseTimeByRequestType = new EnumMap<>(Query.Type.class);
+    // Last position written as a change point, -1 before the first
+    private int lastLoggedPosition = -1;
+    private final List<Process> processes = new ArrayList<>(Main.PROCESS_QUANTITY);
+    private final Metrics metrics = new Metrics(processes);
+
+    public Simulation(QuerySelectionAlgorithm policy, int maxRPS, int queueSize, String outputDirectory, String outputPrefix) {
+        this(policy, maxRPS, queueSize, Main.SEED, outputDirectory, outputPrefix);
+    }
+
+    public Simulation(QuerySelectionAlgorithm policy, int maxRPS, int queueSize, long seed, String outputDirectory, String outputPrefix) {
+        this(List.of(policy), DriveArray.Level.RAID_0, 1, maxRPS, queueSize, seed, outputDirectory, outputPrefix);
+    }
+
+    public Simulation(List<QuerySelectionAlgorithm> policies, DriveArray.Level raidLevel, int cores, int maxRPS, int queueSize, long seed,
+                      String outputDirectory, String outputPrefix) {
+        this(policies, raidLevel, cores, Main.WRITE_BACK_CACHE_SECTORS, maxRPS, queueSize, seed, outputDirectory, outputPrefix);
+    }
+
+    // One policy instance per member drive
+    public Simulation(List<QuerySelectionAlgorithm> policies, DriveArray.Level raidLevel, int cores, int writeBackSectors, int maxRPS, int queueSize,
+                      long seed, String outputDirectory, String outputPrefix) {
+        this(policies, raidLevel, cores, writeBackSectors, maxRPS, queueSize, seed, outputDirectory, outputPrefix, null);
+    }
+
+    // With a trace, its records replace the processes, and the run ends once every record has completed
+    public Simulation(List<QuerySelectionAlgorithm> policies, DriveArray.Level raidLevel, int cores, int writeBackSectors, int maxRPS, int queueSize,
+                      long seed, String outputDirectory, String outputPrefix, TraceReplay.Options trace) {
+        this.policies = policies;
+        this.raidLevel = raidLevel;
+        this.cores = cores;
+        this.writeBackSectors = writeBackSectors;
+        this.maxRPS = maxRPS;
+        this.queueSize = queueSize;
+        this.seed = seed;
+        this.trace = trace;
+
+        SplittableRandom runRandom = new SplittableRandom(seed);
+        this.layoutRandom = runRandom.split();
+        this.arrivalsRandom = runRandom.split();
+        this.processesRandom = runRandom.split();
+
+        this.logger = new Logger(outputDirectory, outputPrefix, Main.LOGGER_MODE, Main.OUTPUT_FORMAT, getConfiguration(),
+                Main.LOGGER_OVERFLOW_POLICY);
+
+        for (Query.Type type : Query.Type.values()) {
+            latencyByRequestType.put(type, new LatencyHistogram());
+            responseTimeByRequestType.put(type, new LatencyHistogram());
+        }
+    }
+
+    public Result run() {
+        long startNanos = System.nanoTime();
+
+        int currentFileBlock = 0;
+
+        SectorBitmap allocatedSectors = new SectorBitmap((long) Main.TRACK_QUANTITY * Main.SECTORS_PER_TRACK);
+        DriveArray driveArray = new DriveArray(raidLevel, policies, Main.STRIPE_SECTORS, Main.DRIVE_ARRAY_THREADS, writeBackSectors, (request, requestCompletionTime) -> {
+            completedRequestsCounter++;
+            logger.writeValue(Logger.Entity.REQUEST_EXECUTION_TIME, requestCompletionTime);
+
+            latency.record(requestCompletionTime);
+            latencyByRequestType.get(request.getType()).record(requestCompletionTime);
+            if (request.getProcess() != null) {
+                latencyByProcess.get(request.getProcess()).record(requestCompletionTime);
+            } else {
+                latencyByStream.computeIfAbsent(request.getStream(), stream -> new LatencyHistogram()).record(requestCompletionTime);
+            }
+
+            // A buffered write is acknowledged in the tick it arrives, but counts a tick like its completion time
+            int requestResponseTime = Math.max(requestCompletionTime, (int) (time - request.getArrivalTime()));
+            responseTime.record(requestResponseTime);
+            responseTimeByRequestType.get(request.getType()).record(requestResponseTime);
+
+            logger.writePair(Logger.Entity.REQUEST_TRACK_NUMBER, time, request.getTrackNumber());
+
+            if (request.getProcess() != null) {
+                request.getProcess().deliverRequestResult(request);
+            }
+        }, metrics);
+
+        Processor processor = new Processor(processes, cores, Processor.DEFAULT_TIME_QUANTUM_MS, maxRPS, arrivalsRandom, logger, metrics);
+        TraceReplay replay = null;
+        if (trace != null) {
+            try {
+                replay = new TraceReplay(trace, driveArray);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        Workload workload = (replay == null) ? processor : replay;
+
+        int processQuantity = (replay == null) ? Main.PROCESS_QUANTITY : 0;
+        for (int i = 0; i < processQuantity; i++) {
+            File.Type fileType = File.Type.values()[layoutRandom.nextInt(Query.Type.values().length + 1)];
+            int fileSize = switch (fileType) {
+                case SMALL -> layoutRandom.nextInt(1, 11);
+                case MEDIUM -> layoutRandom.nextInt(11, 151);
+                case LARGE -> layoutRandom.nextInt(151, 501);
+            };
+
+
+            int[] fileBlocks = new int[fileSize];
+            for (int j = 0; j < fileSize; j++) {
+                boolean successfulWriteToNeighboringBlock = layoutRandom.nextDouble() < Main.NEIGHBORING_SECTOR_WRITE_PROBABILITY;
+
+                int fileBlock;
+                if (successfulWriteToNeighboringBlock) {
+                    fileBlock = currentFileBlock;
+                } else {
+                    fileBlock = currentFileBlock + 1;
+                }
+
+                if (successfulWriteToNeighboringBlock) {
+                    currentFileBlock++;
+                } else {
+                    currentFileBlock += 2;
+                }
+
+                allocatedSectors.set(fileBlock);
+                driveArray.markAllocated(fileBlock);
+                fileBlocks[j] = fileBlock;
+            }
+
+            boolean fileIsReadOnly = layoutRandom.nextBoolean();
+            Process process = new Process(processor, new File(fileType, fileSize, fileBlocks), fileIsReadOnly, driveArray, processesRandom.split());
+            processor.addProcess(process);
+            latencyByProcess.put(process, new LatencyHistogram());
+        }
+
+        try (Writer hardDriveState = logger.openTextWriter(Logger.Entity.HARD_DRIVE_STATE);
+             Writer prettyHardDriveState = logger.openTextWriter(Logger.Entity.PRETTY_HARD_DRIVE_STATE)) {
+            driveArray.writeState(hardDriveState);
+            Main.writePrettyHardDriveState(allocatedSectors, prettyHardDriveState);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        for (int i = 0; i < processes.size(); i++) {
+            logger.write(Logger.Entity.SUMMARY, "Process №" + i + "\n");
+            logger.write(Logger.Entity.SUMMARY, processes.get(i).toString() + "\n\n");
+        }
+        if (allocatedSectors.cardinality() > 0) {
+            writeLayout(allocatedSectors);
+        }
+
+        if (Main.METRICS_JMX) {
+            metrics.register(getPolicyName() + "_" + raidLevel + "x" + policies.size() + "_" + queueSize + "queue_" + maxRPS + "maxRPS_" + seed + "seed");
+        }
+        if (Main.METRICS_SNAPSHOT_INTERVAL_MS > 0) {
+            logger.write(Logger.Entity.METRICS, Metrics.SNAPSHOT_HEADER + "\n");
+        }
+
+        // The MBean, the member threads and the log files must not outlive a run that fails
+        try {
+            switch (Main.ENGINE) {
+                case TICK -> {
+                    while (!isFinished(replay)) {
+                        tick(workload, driveArray);
+                    }
+                }
+                case EVENT -> {
+                    while (!isFinished(replay)) {
+                        int ticksUntilNextEvent = Math.min(workload.getTicksUntilNextEvent(), driveArray.getTicksUntilNextEvent());
+                        if (Main.METRICS_SNAPSHOT_INTERVAL_MS > 0) {
+                            ticksUntilNextEvent = Math.min(ticksUntilNextEvent, Main.METRICS_SNAPSHOT_INTERVAL_MS - time % Main.METRICS_SNAPSHOT_INTERVAL_MS);
+                        }
+
+                        int quietTicks = ticksUntilNextEvent - 1;
+                        if (quietTicks > 0) {
+                            workload.skip(quietTicks);
+                            driveArray.skip(quietTicks);
+
+                            time += quietTicks;
+
+                            logDrivePosition(driveArray.getDrivePosition(0), quietTicks);
+                        }
+
+                        tick(workload, driveArray);
+                    }
+                }
+            }
+
+            double averageRPS = (float) completedRequestsCounter / (workload.getTime() / 1000.0);
+            Metrics.Snapshot finalMetrics = metrics.publish(time);
+
+            logger.write(Logger.Entity.SUMMARY, "\n\n\n");
+
+            logger.write(Logger.Entity.SUMMARY, "Total completed requests: " + completedRequestsCounter + "\n");
+            logger.write(Logger.Entity.SUMMARY, "Simulation time: " + workload.getTime() + " ms\n");
+            logger.write(Logger.Entity.SUMMARY, "Average RPS: " + averageRPS + "\n");
+            if (replay != null) {
+                logger.write(Logger.Entity.SUMMARY, "Trace replay: submitted=" + replay.getSubmittedRequests() + " delayedByFullQueue=" + replay.getDelayedRequests() +
+                        " skippedLines=" + replay.getSkippedLines() + "\n");
+                logger.write(Logger.Entity.SUMMARY, "Wait for a queue slot, ms: " + replay.getQueueSlotWait().getSummary() + "\n");
+            }
+            if (cores > 1 && replay == null) {
+                logger.write(Logger.Entity.SUMMARY, "Work steals: " + processor.getWorkSteals() + "\n");
+            }
+            if (Main.TRACK_CACHE_TRACKS > 0) {
+                long lookups = finalMetrics.trackCacheHits() + finalMetrics.trackCacheMisses();
+                logger.write(Logger.Entity.SUMMARY, "Track cache: hits=" + finalMetrics.trackCacheHits() + " misses=" + finalMetrics.trackCacheMisses() +
+                        " evictions=" + finalMetrics.trackCacheEvictions() +
+                        String.format(Locale.ROOT, " hitRate=%.4f", (lookups == 0) ? 0.0 : (double) finalMetrics.trackCacheHits() / lookups) + "\n");
+            }
+            if (Main.MERGE_ADJACENT_REQUESTS) {
+                logger.write(Logger.Entity.SUMMARY, "Merged requests: " + finalMetrics.mergedRequests() + "\n");
+            }
+            if (writeBackSectors > 0) {
+                logger.write(Logger.Entity.SUMMARY, "Write-back cache: buffered=" + finalMetrics.bufferedWrites() + " coalesced=" + finalMetrics.coalescedWrites() +
+                        " readHits=" + finalMetrics.writeBackReadHits() + " flushes=" + finalMetrics.flushes() +
+                        " flushedSectors=" + finalMetrics.flushedSectors() + " dirtyAtEnd=" + finalMetrics.dirtySectors() + "\n");
+                logger.write(Logger.Entity.SUMMARY, "Flush latency, ms: " + metrics.getFlushLatency().getSummary() + "\n");
+            }
+            if (policies.get(0) instanceof Adaptive) {
+                writePolicySwitches();
+            }
+
+            logger.write(Logger.Entity.SUMMARY, "\nRequest latency, ms: " + latency.getSummary() + "\n");
+            for (Query.Type type : Query.Type.values()) {
+                logger.write(Logger.Entity.SUMMARY, "  " + type + ": " + latencyByRequestType.get(type).getSummary() + "\n");
+            }
+            for (int i = 0; i < processes.size(); i++) {
+                logger.write(Logger.Entity.SUMMARY, "  Process №" + i + ": " + latencyByProcess.get(processes.get(i)).getSummary() + "\n");
+            }
+            for (Map.Entry<Integer, LatencyHistogram> stream : latencyByStream.entrySet()) {
+                logger.write(Logger.Entity.SUMMARY, "  Stream " + stream.getKey() + ": " + stream.getValue().getSummary() + "\n");
+            }
+            logger.write(Logger.Entity.SUMMARY, "\nResponse time, ms: " + responseTime.getSummary() + "\n");
+            for (Query.Type type : Query.Type.values()) {
+                logger.write(Logger.Entity.SUMMARY, "  " + type + ": " + responseTimeByRequestType.get(type).getSummary() + "\n");
+            }
+
+            if (Main.METRICS_SNAPSHOT_INTERVAL_MS > 0 && time % Main.METRICS_SNAPSHOT_INTERVAL_MS != 0) {
+                logger.write(Logger.Entity.METRICS, finalMetrics.format() + "\n");
+            }
+
+            return new Result(getPolicyName(), raidLevel, policies.size(), cores, writeBackSectors, maxRPS, queueSize, seed, completedRequestsCounter,
+                    workload.getTime(), averageRPS, (System.nanoTime() - startNanos) / 1_000_000L,
+                    logger.getBackPressuredRecords(), logger.getDroppedRecords(), latency.snapshot(),
+                    latencyByRequestType.get(Query.Type.READ).snapshot(), responseTime.snapshot());
+        } finally {
+            driveArray.close();
+            if (replay != null) {
+                replay.close();
+            }
+            metrics.unregister();
+            logger.close();
+        }
+    }
+
+    // Where the files of the processes lie, which bounds how far their requests send the head
+    private void writeLayout(SectorBitmap allocatedSectors) {
+        long allocated = allocatedSectors.cardinality();
+        int tracks = 0;
+        for (long sector = allocatedSectors.nextSetBit(0); sector >= 0;
+             sector = allocatedSectors.nextSetBit((sector / Main.SECTORS_PER_TRACK + 1) * Main.SECTORS_PER_TRACK)) {
+            tracks++;
+        }
+        logger.write(Logger.Entity.SUMMARY, "Layout: allocatedSectors=" + allocated + " tracks=" + tracks +
+                " firstTrack=" + allocatedSectors.select(0) / Main.SECTORS_PER_TRACK +
+                " medianTrack=" + allocatedSectors.select((allocated - 1) / 2) / Main.SECTORS_PER_TRACK +
+                " lastTrack=" + allocatedSectors.select(allocated - 1) / Main.SECTORS_PER_TRACK + "\n\n");
+    }
+
+        // Switch events of every member go to their own file, the switch count and the time in each mode summed over the members to the summary
+    private void writePolicySwitches() {
+        int switches = 0;
+        Map<Adaptive.Mode, Long> timeInMode = new EnumMap<>(Adaptive.Mode.class);
+        for (int member = 0; member < policies.size(); member++) {
+            Adaptive policy = (Adaptive) policies.get(member);
+            for (Adaptive.Switch policySwitch : policy.getSwitches()) {
+                logger.write(Logger.Entity.POLICY_SWITCHES, policySwitch.time() + " " + member + " " + policySwitch.from() + " " + policySwitch.to() + "\n");
+            }
+            switches += policy.getSwitches().size();
+            for (Adaptive.Mode mode : Adaptive.Mode.values()) {
+                timeInMode.merge(mode, policy.getTimeInMode(mode, time), Long::sum);
+            }
+        }
+
+        StringBuilder summary = new StringBuilder("Adaptive policy: switches=" + switches + ", time in mode, ms:");
+        for (Adaptive.Mode mode : Adaptive.Mode.values()) {
+            summary.append(" ").append(mode).append("=").append(timeInMode.get(mode));
+        }
+        logger.write(Logger.Entity.SUMMARY, summary + "\n");
+    }
+
+    // A replay ends once every record of the trace has completed, a simulation after SIMULATION_REQUESTS requests
+    private boolean isFinished(TraceReplay replay) {
+        if (replay == null) {
+            return completedRequestsCounter >= Main.SIMULATION_REQUESTS;
+        }
+        return replay.isExhausted() && completedRequestsCounter >= replay.getSubmittedRequests();
+    }
+
+    private String getPolicyName() {
+        return policies.get(0).getClass().getSimpleName();
+    }
+
+    public String getConfiguration() {
+        return "policy=" + getPolicyName() +
+                ";raidLevel=" + raidLevel +
+                ";drives=" + policies.size() +
+                ";cores=" + cores +
+                ((writeBackSectors > 0) ? ";writeBackSectors=" + writeBackSectors : "") +
+                (Main.MERGE_ADJACENT_REQUESTS ? ";mergeAdjacentRequests=true" : "") +
+                (Main.ROTATIONAL_POSITION_MODEL ? ";rotationalPositionModel=true" : "") +
+                ";maxRPS=" + maxRPS +
+                ";processQuantity=" + Main.PROCESS_QUANTITY +
+                ";trackQuantity=" + Main.TRACK_QUANTITY +
+                ";sectorsPerTrack=" + Main.SECTORS_PER_TRACK +
+                ";queueSize=" + queueSize +
+                ";seed=" + seed +
+                ((trace == null) ? ";simulationRequests=" + Main.SIMULATION_REQUESTS : "") +
+                ((trace == null) ? "" : ";trace=" + trace.path().getFileName() + ";traceFormat=" + trace.format() + ";timeScale=" + trace.timeScale() +
+                        ";sectorMapping=" + trace.sectorMapping() +
+                        ((trace.sectorMapping() == TraceReplay.SectorMapping.SCALE) ? ";traceSectors=" + trace.traceSectors() : ""));
+    }
+
+    private void tick(Workload workload, DriveArray driveArray) {
+        workload.tick();
+        driveArray.tick();
+
+        time++;
+
+        logDrivePosition(driveArray.getDrivePosition(0), 1);
+
+        if (Main.METRICS_SNAPSHOT_INTERVAL_MS > 0 && time % Main.METRICS_SNAPSHOT_INTERVAL_MS == 0) {
+            logger.write(Logger.Entity.METRICS, metrics.publish(time).format() + "\n");
+        }
+    }
+
+    // Logs the position of the first member drive held during the last `ticks` milliseconds, ending at the current time
+    private void logDrivePosition(int position, int ticks) {
+        switch (Main.DRIVE_POSITION_ENCODING) {
+            case PER_MILLISECOND -> logger.writeRepeatedValue(Logger.Entity.DRIVE_POSITION, position, ticks);
+            case CHANGE_POINTS -> {
+                int startTime = time - ticks + 1;
+                if (position != lastLoggedPosition) {
+                    logger.writePair(Logger.Entity.DRIVE_POSITION_CHANGES, startTime, position);
+                    lastLoggedPosition = position;
+                }
+            }
+        }
+    }
+
+    public record Result(String policy, DriveArray.Level raidLevel, int drives, int cores, int writeBackSectors, int maxRPS, int queueSize, long seed,
+                         int completedRequests, long simulationTimeMs, double averageRPS, long wallTimeMs, long backPressuredLogRecords,
+                         long droppedLogRecords, LatencyHistogram latency, LatencyHistogram readLatency, LatencyHistogram responseTime) {
+    }
+}
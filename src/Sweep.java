@@ -0,0 +1,215 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Usage: sweep <outputDirectory> [--policies 1,2,3] [--max-rps 10,100,1000] [--queue-sizes 20] [--seeds 1303]
+//              [--raid-levels RAID_0,RAID_10] [--drives 1,2,4] [--cores 1,2,4] [--write-back-sectors 0,256] [--threads N]
+public class Sweep {
+    private static final int[] DEFAULT_POLICIES = {1, 2, 3};
+    private static final int[] DEFAULT_MAX_RPS = {10, 50, 100, 500, 1000};
+    private static final int[] DEFAULT_QUEUE_SIZES = {Main.QUEUE_SIZE};
+    private static final long[] DEFAULT_SEEDS = {Main.SEED};
+    private static final DriveArray.Level[] DEFAULT_RAID_LEVELS = {Main.RAID_LEVEL};
+    private static final int[] DEFAULT_DRIVES = {Main.DRIVE_QUANTITY};
+    private static final int[] DEFAULT_CORES = {Main.CPU_CORES};
+    private static final int[] DEFAULT_WRITE_BACK_SECTORS = {Main.WRITE_BACK_CACHE_SECTORS};
+
+    private final String outputDirectory;
+    private final int[] policies;
+    private final int[] maxRPSValues;
+    private final int[] queueSizes;
+    private final long[] seeds;
+    private final DriveArray.Level[] raidLevels;
+    private final int[] drives;
+    private final int[] cores;
+    private final int[] writeBackSectors;
+    private final int threads;
+
+    public Sweep(String outputDirectory, int[] policies, int[] maxRPSValues, int[] queueSizes, long[] seeds, int threads) {
+        this(outputDirectory, policies, maxRPSValues, queueSizes, seeds, DEFAULT_RAID_LEVELS, DEFAULT_DRIVES, DEFAULT_CORES, threads);
+    }
+
+    public Sweep(String outputDirectory, int[] policies, int[] maxRPSValues, int[] queueSizes, long[] seeds,
+                 DriveArray.Level[] raidLevels, int[] drives, int[] cores, int threads) {
+        this(outputDirectory, policies, maxRPSValues, queueSizes, seeds, raidLevels, drives, cores, DEFAULT_WRITE_BACK_SECTORS, threads);
+    }
+
+    public Sweep(String outputDirectory, int[] policies, int[] maxRPSValues, int[] queueSizes, long[] seeds,
+                 DriveArray.Level[] raidLevels, int[] drives, int[] cores, int[] writeBackSectors, int threads) {
+        this.outputDirectory = outputDirectory;
+        this.policies = policies;
+        this.maxRPSValues = maxRPSValues;
+        this.queueSizes = queueSizes;
+        this.seeds = seeds;
+        this.raidLevels = raidLevels;
+        this.drives = drives;
+        this.cores = cores;
+        this.writeBackSectors = writeBackSectors;
+        this.threads = (threads <= 0) ? Runtime.getRuntime().availableProcessors() : threads;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Output directory is required");
+        }
+
+        int[] policies = DEFAULT_POLICIES;
+        int[] maxRPSValues = DEFAULT_MAX_RPS;
+        int[] queueSizes = DEFAULT_QUEUE_SIZES;
+        long[] seeds = DEFAULT_SEEDS;
+        DriveArray.Level[] raidLevels = DEFAULT_RAID_LEVELS;
+        int[] drives = DEFAULT_DRIVES;
+        int[] cores = DEFAULT_CORES;
+        int[] writeBackSectors = DEFAULT_WRITE_BACK_SECTORS;
+        int threads = 0;
+
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--policies" -> policies = parseList(args[i + 1]);
+                case "--max-rps" -> maxRPSValues = parseList(args[i + 1]);
+                case "--queue-sizes" -> queueSizes = parseList(args[i + 1]);
+                case "--seeds" -> seeds = Arrays.stream(args[i + 1].split(",")).map(String::trim).mapToLong(Long::parseLong).toArray();
+                case "--raid-levels" -> raidLevels = Arrays.stream(args[i + 1].split(",")).map(String::trim).map(DriveArray.Level::valueOf)
+                        .toArray(DriveArray.Level[]::new);
+                case "--drives" -> drives = parseList(args[i + 1]);
+                case "--cores" -> cores = parseList(args[i + 1]);
+                case "--write-back-sectors" -> writeBackSectors = parseList(args[i + 1]);
+                case "--threads" -> threads = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        List<Simulation.Result> results = new Sweep(args[0], policies, maxRPSValues, queueSizes, seeds, raidLevels, drives, cores, writeBackSectors, threads).run();
+        for (Simulation.Result result : results) {
+            System.out.println(formatRow(result));
+        }
+    }
+
+    private static int[] parseList(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+
+    public List<Simulation.Result> run() {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Simulation.Result>> futures = new ArrayList<>();
+
+        try {
+            for (int policy : policies) {
+                for (DriveArray.Level raidLevel : raidLevels) {
+                    for (int driveQuantity : drives) {
+                        for (int coreQuantity : cores) {
+                            for (int writeBackQuantity : writeBackSectors) {
+                                for (int queueSize : queueSizes) {
+                                    for (int maxRPS : maxRPSValues) {
+                                        for (long seed : seeds) {
+                                            futures.add(executor.submit(() -> runOne(policy, raidLevel, driveQuantity, coreQuantity, writeBackQuantity,
+                                                    queueSize, maxRPS, seed)));
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            List<Simulation.Result> results = new ArrayList<>(futures.size());
+            for (Future<Simulation.Result> future : futures) {
+                results.add(future.get());
+            }
+
+            writeSummary(results);
+            writeLatencySummary(results);
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Sweep was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Sweep run failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Simulation.Result runOne(int policyChoice, DriveArray.Level raidLevel, int driveQuantity, int coreQuantity, int writeBackQuantity,
+                                     int queueSize, int maxRPS, long seed) throws IOException {
+        List<QuerySelectionAlgorithm> memberPolicies = Main.createPolicies(policyChoice, queueSize, driveQuantity);
+        String policyName = memberPolicies.get(0).getClass().getSimpleName();
+
+        // Single-drive, single-core runs without write-back keep the directory names they had before drive arrays, cores and write-back
+        String arrayName = (driveQuantity == 1 && raidLevel == DriveArray.Level.RAID_0) ? "" : "_" + raidLevel + "x" + driveQuantity;
+        String coresName = (coreQuantity == 1) ? "" : "_" + coreQuantity + "cores";
+        String writeBackName = (writeBackQuantity == 0) ? "" : "_wb" + writeBackQuantity;
+        Path runDirectory = Path.of(outputDirectory, policyName + arrayName + coresName + writeBackName + "_" + queueSize + "queue_" + maxRPS + "maxRPS_" + seed + "seed");
+        Files.createDirectories(runDirectory);
+
+        return new Simulation(memberPolicies, raidLevel, coreQuantity, writeBackQuantity, maxRPS, queueSize, seed, runDirectory.toString(), policyName + "_" + maxRPS + "maxRPS").run();
+    }
+
+    private void writeSummary(List<Simulation.Result> results) {
+        try (FileWriter writer = new FileWriter(Path.of(outputDirectory, "SWEEP_SUMMARY.txt").toString())) {
+            writer.write("policy\traidLevel\tdrives\tcores\twriteBackSectors\tqueueSize\tmaxRPS\tseed\tcompletedRequests\tsimulationTimeMs\taverageRPS" +
+                    "\twallTimeMs" + latencyHeader() + "\treadP50Ms\treadP99Ms\tresponseP99Ms\tresponseP99.9Ms\n");
+            for (Simulation.Result result : results) {
+                writer.write(formatRow(result) + "\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Latency of every run of a policy merged together, across maxRPS values, queue sizes and seeds; runs with
+    // write-back are kept apart, so that the two rows show what buffering writes does to latency
+    private void writeLatencySummary(List<Simulation.Result> results) {
+        Map<String, LatencyHistogram> latencyByPolicy = new LinkedHashMap<>();
+        for (Simulation.Result result : results) {
+            String policy = (result.writeBackSectors() == 0) ? result.policy() : result.policy() + "_wb" + result.writeBackSectors();
+            latencyByPolicy.computeIfAbsent(policy, key -> new LatencyHistogram()).add(result.latency());
+        }
+
+        try (FileWriter writer = new FileWriter(Path.of(outputDirectory, "SWEEP_LATENCY.txt").toString())) {
+            writer.write("policy\tcompletedRequests" + latencyHeader() + "\n");
+            for (Map.Entry<String, LatencyHistogram> entry : latencyByPolicy.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue().getTotalCount() + formatLatency(entry.getValue()) + "\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String formatRow(Simulation.Result result) {
+        return result.policy() + "\t" + result.raidLevel() + "\t" + result.drives() + "\t" + result.cores() + "\t" + result.writeBackSectors() + "\t" + result.queueSize() + "\t" + result.maxRPS() + "\t" + result.seed() + "\t" + result.completedRequests() +
+                "\t" + result.simulationTimeMs() + "\t" + result.averageRPS() + "\t" + result.wallTimeMs() + formatLatency(result.latency()) +
+                "\t" + result.readLatency().valueAtPercentile(50.0) + "\t" + result.readLatency().valueAtPercentile(99.0) +
+                "\t" + result.responseTime().valueAtPercentile(99.0) + "\t" + result.responseTime().valueAtPercentile(99.9);
+    }
+
+    private static String latencyHeader() {
+        StringBuilder header = new StringBuilder();
+        for (double percentile : LatencyHistogram.REPORTED_PERCENTILES) {
+            header.append("\tp").append(LatencyHistogram.formatPercentile(percentile)).append("Ms");
+        }
+        return header.append("\tmaxMs").toString();
+    }
+
+    private static String formatLatency(LatencyHistogram latency) {
+        StringBuilder row = new StringBuilder();
+        for (double percentile : LatencyHistogram.REPORTED_PERCENTILES) {
+            row.append('\t').append(latency.valueAtPercentile(percentile));
+        }
+        return row.append('\t').append(latency.getMax()).toString();
+    }
+}
@@ -0,0 +1,277 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Replays a block I/O trace against the drive array in place of the simulated processes. The trace is read
+// one line at a time, so only the next record is ever held, whatever the size of the file. A record is submitted
+// when the drives' clock reaches its timestamp; one that finds the queue full waits for a slot, and the records after
+// it wait behind it. A slot can only open at an event of the drives, so a waiting record does not make the simulation
+// step through every millisecond. Every record becomes one request to its first sector.
+//
+// Timestamps are in seconds from any origin, and the gaps between them are multiplied by timeScale, so 0.5 replays
+// the trace twice as fast. Sectors are addresses of the traced device, which is usually far larger than the
+// simulated one: WRAP takes them modulo the sectors of the array, SCALE maps the traceSectors of the device
+// proportionally onto them and so keeps the distances between requests in proportion.
+//
+// CSV:      timestamp,sector,type,stream, e.g. "0.000125,223490,W,697", with R or W as type; stream is optional
+// BLKPARSE: default blkparse output, e.g. "8,0 3 1 0.000000000 697 Q W 223490 + 8 [kjournald]"; queue (Q)
+//           events of reads and writes are replayed, with the pid as stream
+// Lines that are not requests, such as a header or the blkparse totals, are counted and skipped
+//
+// Usage: replay <trace> <outputDirectory> [--policies 1,2,3] [--format CSV|BLKPARSE] [--time-scale 1.0]
+//               [--sector-mapping WRAP|SCALE] [--trace-sectors N]
+public class TraceReplay implements Workload, Closeable {
+    private static final int[] DEFAULT_POLICIES = {1, 2, 3};
+    private static final int READ_BUFFER_CHARS = 1 << 20;
+
+    private final Options options;
+    private final DriveArray driveArray;
+    private final int logicalSectors;
+    private final BufferedReader reader;
+
+    private long time = 0;
+    private double firstTimestamp = Double.NaN;
+    // Null once the trace is exhausted
+    private Record next;
+    private boolean nextDelayed = false;
+
+    private long submittedRequests = 0;
+    private long delayedRequests = 0;
+    private long skippedLines = 0;
+    // From the timestamp of a record to its submission
+    private final LatencyHistogram queueSlotWait = new LatencyHistogram();
+
+    public TraceReplay(Options options, DriveArray driveArray) throws IOException {
+        this.options = options;
+        this.driveArray = driveArray;
+        this.logicalSectors = driveArray.getLogicalSectors();
+        this.reader = new BufferedReader(new InputStreamReader(Files.newInputStream(options.path()), StandardCharsets.UTF_8), READ_BUFFER_CHARS);
+        this.next = readNext();
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Trace and output directory are required");
+        }
+
+        int[] policies = DEFAULT_POLICIES;
+        Format format = Format.CSV;
+        double timeScale = 1.0;
+        SectorMapping sectorMapping = SectorMapping.WRAP;
+        long traceSectors = 0;
+
+        for (int i = 2; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--policies" -> policies = Arrays.stream(args[i + 1].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+                case "--format" -> format = Format.valueOf(args[i + 1]);
+                case "--time-scale" -> timeScale = Double.parseDouble(args[i + 1]);
+                case "--sector-mapping" -> sectorMapping = SectorMapping.valueOf(args[i + 1]);
+                case "--trace-sectors" -> traceSectors = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Options options = new Options(Path.of(args[0]), format, timeScale, sectorMapping, traceSectors);
+        List<Simulation.Result> results = new ArrayList<>();
+        for (int policy : policies) {
+            List<QuerySelectionAlgorithm> drivePolicies = Main.createPolicies(policy, Main.QUEUE_SIZE, Main.DRIVE_QUANTITY);
+            String prefix = drivePolicies.get(0).getClass().getSimpleName() + "_replay";
+            results.add(new Simulation(drivePolicies, Main.RAID_LEVEL, Main.CPU_CORES, Main.WRITE_BACK_CACHE_SECTORS, 0, Main.QUEUE_SIZE,
+                    Main.SEED, args[1], prefix, options).run());
+        }
+
+        for (Simulation.Result result : results) {
+            System.out.println(result.policy() + ": completed=" + result.completedRequests() + " simulationTimeMs=" + result.simulationTimeMs() +
+                    " latency[" + result.latency().getSummary() + "] response[" + result.responseTime().getSummary() + "]");
+        }
+    }
+
+    @Override
+    public void tick() {
+        while (next != null && next.time() <= time) {
+            Query query = new Query(next.type(), next.sector(), next.stream());
+            if (!driveArray.canAccept(query)) {
+                if (!nextDelayed) {
+                    nextDelayed = true;
+                    delayedRequests++;
+                }
+                break;
+            }
+            try {
+                driveArray.addRequestToQueue(query);
+            } catch (QuerySelectionAlgorithm.QueueFullException exception) {
+                throw new IllegalStateException("Drive array rejected a request that it could accept", exception);
+            }
+            queueSlotWait.record((int) (time - next.time()));
+            submittedRequests++;
+            nextDelayed = false;
+            next = readNext();
+        }
+
+        time++;
+    }
+
+    @Override
+    public int getTicksUntilNextEvent() {
+        if (next == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (next.time() > time) {
+            return (int) Math.min(Integer.MAX_VALUE, next.time() - time + 1);
+        }
+        return driveArray.canAccept(new Query(next.type(), next.sector(), next.stream())) ? 1 : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void skip(int ticks) {
+        time += ticks;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    public boolean isExhausted() {
+        return next == null;
+    }
+
+    public long getSubmittedRequests() {
+        return submittedRequests;
+    }
+
+    public long getDelayedRequests() {
+        return delayedRequests;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    public LatencyHistogram getQueueSlotWait() {
+        return queueSlotWait;
+    }
+
+    private Record readNext() {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Record record = parse(line);
+                if (record != null) {
+                    return record;
+                }
+                skippedLines++;
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Record parse(String line) {
+        String[] fields = switch (options.format()) {
+            case CSV -> line.split(",");
+            case BLKPARSE -> line.trim().split("\\s+");
+        };
+
+        try {
+            double timestamp;
+            long sector;
+            String type;
+            int stream;
+            switch (options.format()) {
+                case CSV -> {
+                    if (fields.length < 3) {
+                        return null;
+                    }
+                    timestamp = Double.parseDouble(fields[0].trim());
+                    sector = Long.parseLong(fields[1].trim());
+                    type = fields[2].trim();
+                    stream = (fields.length > 3) ? Integer.parseInt(fields[3].trim()) : 0;
+                }
+                case BLKPARSE -> {
+                    if (fields.length < 8 || !fields[5].equals("Q")) {
+                        return null;
+                    }
+                    timestamp = Double.parseDouble(fields[3]);
+                    stream = Integer.parseInt(fields[4]);
+                    type = fields[6];
+                    sector = Long.parseLong(fields[7]);
+                }
+                default -> throw new IllegalStateException("Unknown trace format " + options.format());
+            }
+
+            // blkparse marks writes W and reads R among other flags, e.g. WS or RA
+            Query.Type queryType = type.contains("W") || type.contains("w")
+                    ? Query.Type.WRITE
+                    : type.contains("R") || type.contains("r") ? Query.Type.READ : null;
+            int mappedSector = mapSector(sector);
+            if (queryType == null || mappedSector < 0) {
+                return null;
+            }
+
+            if (Double.isNaN(firstTimestamp)) {
+                firstTimestamp = timestamp;
+            }
+            long recordTime = Math.round((timestamp - firstTimestamp) * 1000 * options.timeScale());
+            return new Record(recordTime, queryType, mappedSector, stream);
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    // -1 for a sector outside the traced device
+    private int mapSector(long sector) {
+        if (sector < 0) {
+            return -1;
+        }
+        return switch (options.sectorMapping()) {
+            case WRAP -> (int) (sector % logicalSectors);
+            case SCALE -> (sector < options.traceSectors()) ? (int) (sector * logicalSectors / options.traceSectors()) : -1;
+        };
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private record Record(long time, Query.Type type, int sector, int stream) {
+    }
+
+    public record Options(Path path, Format format, double timeScale, SectorMapping sectorMapping, long traceSectors) {
+        public Options {
+            if (!(timeScale > 0)) {
+                throw new IllegalArgumentException("timeScale should be greater than 0");
+            }
+            if (sectorMapping == SectorMapping.SCALE && traceSectors <= 0) {
+                throw new IllegalArgumentException("SCALE sector mapping needs the sector count of the traced device");
+            }
+        }
+    }
+
+    public enum Format {
+        CSV,
+        BLKPARSE
+    }
+
+    public enum SectorMapping {
+        WRAP,
+        SCALE
+    }
+}
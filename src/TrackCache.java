@@ -0,0 +1,62 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Drive buffer holding whole tracks, least recently used first out. A track is loaded when a read
+// from the platter completes, together with the readAheadTracks tracks after it; loading is free,
+// as the drive reads ahead while it would otherwise wait for the next request
+public class TrackCache {
+    private final int capacity;
+    private final int readAheadTracks;
+    private final int trackQuantity;
+    private final Metrics metrics;
+    private final LinkedHashMap<Integer, Boolean> tracks;
+
+    public TrackCache(int capacity, int readAheadTracks, int trackQuantity, Metrics metrics) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0");
+        }
+        if (readAheadTracks < 0) {
+            throw new IllegalArgumentException("readAheadTracks should not be negative");
+        }
+        this.capacity = capacity;
+        this.readAheadTracks = readAheadTracks;
+        this.trackQuantity = trackQuantity;
+        this.metrics = metrics;
+        this.tracks = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+                if (size() > TrackCache.this.capacity) {
+                    TrackCache.this.metrics.trackCacheEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Counts a hit or a miss, and makes a hit track the most recently used one
+    public boolean lookup(int track) {
+        if (tracks.get(track) != null) {
+            metrics.trackCacheHit();
+            return true;
+        }
+        metrics.trackCacheMiss();
+        return false;
+    }
+
+    // The track that was read ends up as the most recently used one
+    public void load(int track) {
+        int lastTrack = Math.min(track + readAheadTracks, trackQuantity - 1);
+        for (int t = lastTrack; t >= track; t--) {
+            tracks.put(t, Boolean.TRUE);
+        }
+    }
+
+    public boolean contains(int track) {
+        return tracks.containsKey(track);
+    }
+
+    public int size() {
+        return tracks.size();
+    }
+}
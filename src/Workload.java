@@ -0,0 +1,10 @@
+// Source of the requests that reach the drive array, advanced on the same clock as the drives
+public interface Workload {
+    void tick();
+
+    int getTicksUntilNextEvent();
+
+    void skip(int ticks);
+
+    long getTime();
+}
@@ -0,0 +1,152 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+// Dirty sectors waiting to be written to the platter, merged into runs of consecutive sectors on one
+// track, so that repeated writes to a sector and writes to its neighbours cost a single flush. Runs
+// are flushed in track order from the head; the controller flushes when it has nothing else to do,
+// or ahead of the queue from the moment the dirty sectors reach the high watermark until they are
+// back at the low one
+public class WriteBackCache {
+    private final int capacity;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final Metrics metrics;
+
+    private final TreeMap<Integer, Extent> extents = new TreeMap<>();
+    private int dirtySectors = 0;
+    private boolean draining = false;
+
+    public WriteBackCache(int capacity, double highWatermark, double lowWatermark, Metrics metrics) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity should be greater than 0");
+        }
+        if (!(0 <= lowWatermark && lowWatermark <= highWatermark && highWatermark <= 1)) {
+            throw new IllegalArgumentException("Watermarks should satisfy 0 <= low <= high <= 1");
+        }
+        this.capacity = capacity;
+        this.highWatermark = Math.max(1, (int) Math.ceil(capacity * highWatermark));
+        this.lowWatermark = (int) Math.floor(capacity * lowWatermark);
+        this.metrics = metrics;
+    }
+
+    public boolean contains(int sector) {
+        Map.Entry<Integer, Extent> floor = extents.floorEntry(sector);
+        return floor != null && floor.getValue().contains(sector);
+    }
+
+    // A write to a dirty sector always fits, a new sector only below capacity
+    public boolean canBuffer(int sector) {
+        return dirtySectors < capacity || contains(sector);
+    }
+
+    public void write(int sector, long time) {
+        if (!canBuffer(sector)) {
+            throw new IllegalStateException("Write-back cache is full");
+        }
+        metrics.writeBuffered();
+
+        Map.Entry<Integer, Extent> floorEntry = extents.floorEntry(sector);
+        Extent before = (floorEntry == null) ? null : floorEntry.getValue();
+        if (before != null && before.contains(sector)) {
+            metrics.writeCoalesced();
+            return;
+        }
+
+        dirtySectors++;
+        metrics.dirtySectorsChanged(1);
+        if (dirtySectors >= highWatermark) {
+            draining = true;
+        }
+
+        Extent after = extents.get(sector + 1);
+        boolean joinsBefore = before != null && before.start + before.length == sector && sameTrack(before.start, sector);
+        boolean joinsAfter = after != null && sameTrack(sector, after.start);
+
+        if (joinsBefore && joinsAfter) {
+            extents.remove(after.start);
+            before.length += 1 + after.length;
+            before.firstWriteTime = Math.min(before.firstWriteTime, after.firstWriteTime);
+            metrics.writeCoalesced();
+        } else if (joinsBefore) {
+            before.length++;
+            metrics.writeCoalesced();
+        } else if (joinsAfter) {
+            extents.remove(after.start);
+            after.start = sector;
+            after.length++;
+            extents.put(sector, after);
+            metrics.writeCoalesced();
+        } else {
+            extents.put(sector, new Extent(sector, 1, time));
+        }
+    }
+
+    private boolean sameTrack(int firstSector, int secondSector) {
+        return firstSector / Main.SECTORS_PER_TRACK == secondSector / Main.SECTORS_PER_TRACK;
+    }
+
+    public boolean isEmpty() {
+        return extents.isEmpty();
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    // Removes the first run at or after the head's track, wrapping around to the lowest track
+    public Extent takeNextExtent(int headTrack) {
+        Map.Entry<Integer, Extent> entry = extents.ceilingEntry(headTrack * Main.SECTORS_PER_TRACK);
+        if (entry == null) {
+            entry = extents.firstEntry();
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        extents.remove(entry.getKey());
+        Extent extent = entry.getValue();
+        dirtySectors -= extent.length;
+        metrics.dirtySectorsChanged(-extent.length);
+        if (dirtySectors <= lowWatermark) {
+            draining = false;
+        }
+        return extent;
+    }
+
+    // Latency of a flush is counted from the first write to the run until the run is on the platter
+    public void flushed(Extent extent, long time) {
+        metrics.extentFlushed(extent.length, (int) (time - extent.firstWriteTime));
+    }
+
+    public int getDirtySectors() {
+        return dirtySectors;
+    }
+
+    public static class Extent {
+        private int start;
+        private int length;
+        private long firstWriteTime;
+
+        private Extent(int start, int length, long firstWriteTime) {
+            this.start = start;
+            this.length = length;
+            this.firstWriteTime = firstWriteTime;
+        }
+
+        private boolean contains(int sector) {
+            return start <= sector && sector < start + length;
+        }
+
+        public int getStartSector() {
+            return start;
+        }
+
+        public int getTrackNumber() {
+            return start / Main.SECTORS_PER_TRACK;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+}